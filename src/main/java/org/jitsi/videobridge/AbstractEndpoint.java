@@ -249,6 +249,19 @@ public void expire()
      */
     public abstract boolean shouldExpire();
 
+    /**
+     * Gets the earliest time at which {@link #shouldExpire()} may start to
+     * return {@code true} (unless something other than the passing of time
+     * changes, e.g. a channel is removed), so that the expire thread doesn't
+     * need to check this endpoint before then.
+     *
+     * @return the time in milliseconds, or -1 if it can't be predicted.
+     */
+    public long getEarliestExpireTimeMs()
+    {
+        return -1;
+    }
+
     /**
      * Get the last 'activity' (packets received or packets sent) this endpoint has seen
      * @return the timestamp, in milliseconds, of the last activity of this endpoint
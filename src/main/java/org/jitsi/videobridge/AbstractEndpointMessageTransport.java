@@ -86,6 +86,20 @@ protected void onClientHello(Object src, JSONObject jsonObject)
     {
     }
 
+    /**
+     * Notifies this {@link AbstractEndpointMessageTransport} that an
+     * {@code OctoVideoInterest} message has been received. These are only
+     * expected from remote bridges, so they are ignored by default.
+     *
+     * @param src the transport channel on which {@code jsonObject} has
+     * been received
+     * @param jsonObject the JSON object with {@link Videobridge#COLIBRI_CLASS}
+     * {@code OctoVideoInterest} which has been received.
+     */
+    protected void onOctoVideoInterest(Object src, JSONObject jsonObject)
+    {
+    }
+
     /**
      * Notifies this {@code Endpoint} that a specific JSON object has been
      * received.
@@ -129,6 +143,9 @@ private void onJSONData(
                 case COLIBRI_CLASS_RECEIVER_VIDEO_CONSTRAINT:
                     onReceiverVideoConstraintEvent(src, jsonObject);
                     break;
+                case COLIBRI_CLASS_OCTO_VIDEO_INTEREST:
+                    onOctoVideoInterest(src, jsonObject);
+                    break;
                 default:
                     logger.info(
                             "Received a message with unknown colibri class: "
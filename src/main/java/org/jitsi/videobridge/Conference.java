@@ -18,12 +18,14 @@
 import org.jetbrains.annotations.*;
 import org.jitsi.eventadmin.*;
 import org.jitsi.nlj.*;
+import org.jitsi.nlj.rtp.*;
 import org.jitsi.rtp.*;
 import org.jitsi.rtp.rtcp.rtcpfb.payload_specific_fb.*;
 import org.jitsi.rtp.rtp.*;
 import org.jitsi.utils.event.*;
 import org.jitsi.utils.logging.*;
 import org.jitsi.utils.logging.Logger;
+import org.jitsi.videobridge.cc.*;
 import org.jitsi.videobridge.octo.*;
 import org.jitsi.videobridge.shim.*;
 import org.jitsi.videobridge.util.*;
@@ -61,6 +63,12 @@
      */
     private static final Logger classLogger = Logger.getLogger(Conference.class);
 
+    /**
+     * The time (in milliseconds) after its creation during which a conference
+     * is allowed to have no endpoints.
+     */
+    private static final long EMPTY_CONFERENCE_GRACE_PERIOD_MS = 20000;
+
     /**
      * The endpoints participating in this {@link Conference}. Although it's a
      * {@link ConcurrentHashMap}, writing to it must be protected by
@@ -79,6 +87,27 @@
      */
     private List<Endpoint> endpointsCache = Collections.EMPTY_LIST;
 
+    /**
+     * The local endpoints which are potential receivers of the packets of each
+     * source endpoint, keyed by the ID of the source endpoint. The entries
+     * are computed on demand from {@link #endpointsCache} and the whole map is
+     * replaced (see {@link #receiversChanged()}) when the set of endpoints,
+     * the connectivity of their transports or the media types which they
+     * accept changes. This allows {@link #sendOut(PacketInfo)} to only iterate
+     * over the endpoints which may want a packet.
+     */
+    private volatile FanOuts fanOuts = new FanOuts();
+
+    /**
+     * Maps an SSRC of an RTP stream received by this {@link Conference} to
+     * the endpoint (local or Octo) which sends it. It is updated when SSRCs
+     * are signaled for an endpoint and when endpoints expire, so that the
+     * sender of a stream can be found without iterating over all endpoints
+     * (e.g. for each PLI/FIR that we receive).
+     */
+    private final ConcurrentLongObjectMap<AbstractEndpoint> endpointsBySsrc
+            = new ConcurrentLongObjectMap<>();
+
     /**
      * The {@link EventAdmin} instance (to be) used by this {@code Conference}
      * and all instances (of {@code Content}, {@code Channel}, etc.) created by
@@ -193,6 +222,13 @@
     //TODO not public
     final public EncodingsManager encodingsManager = new EncodingsManager();
 
+    /**
+     * The bitrates of the tracks in this conference, shared by the
+     * {@link BitrateController}s of all local endpoints.
+     */
+    private final TrackBitrateSnapshots trackBitrateSnapshots
+        = new TrackBitrateSnapshots();
+
     /**
      * This {@link Conference}'s link to Octo.
      */
@@ -560,10 +596,40 @@ private void updateStatisticsOnExpire()
      */
     AbstractEndpoint findEndpointByReceiveSSRC(long receiveSSRC)
     {
-        return getEndpoints().stream()
-                .filter(ep -> ep.receivesSsrc(receiveSSRC))
-                .findFirst()
-                .orElse(null);
+        return endpointsBySsrc.get(receiveSSRC);
+    }
+
+    /**
+     * Notifies this {@link Conference} that a specific endpoint sends an RTP
+     * stream with a specific SSRC, so that it can be found by
+     * {@link #findEndpointByReceiveSSRC(long)}.
+     *
+     * @param endpoint the endpoint which sends the stream.
+     * @param ssrc the SSRC of the stream.
+     */
+    public void addEndpointSsrc(@NotNull AbstractEndpoint endpoint, long ssrc)
+    {
+        AbstractEndpoint previous = endpointsBySsrc.put(ssrc, endpoint);
+        if (previous != null && previous != endpoint && logger.isDebugEnabled())
+        {
+            logger.debug(logPrefix + "SSRC " + ssrc + " moved from endpoint "
+                + previous.getID() + " to " + endpoint.getID());
+        }
+    }
+
+    /**
+     * Notifies this {@link Conference} that a specific endpoint no longer
+     * sends an RTP stream with a specific SSRC.
+     *
+     * @param endpoint the endpoint which used to send the stream.
+     * @param ssrc the SSRC of the stream.
+     */
+    public void removeEndpointSsrc(@NotNull AbstractEndpoint endpoint, long ssrc)
+    {
+        // Only remove the mapping if it still points to this endpoint (the
+        // SSRC may have been re-assigned, e.g. when an endpoint moved from a
+        // remote bridge to this one).
+        endpointsBySsrc.remove(ssrc, endpoint);
     }
 
     /**
@@ -632,6 +698,7 @@ private AbstractEndpoint getEndpoint(String id, boolean create)
                         EventFactory.endpointCreated(endpoint));
             }
 
+            videobridge.scheduleExpireCheck(endpoint);
             endpointsChanged();
         }
 
@@ -644,6 +711,11 @@ private AbstractEndpoint getEndpoint(String id, boolean create)
     private void endpointsChanged()
     {
         speechActivity.endpointsChanged();
+
+        if (getEndpointCount() == 0)
+        {
+            videobridge.scheduleExpireCheck(this);
+        }
     }
 
     /**
@@ -684,6 +756,62 @@ private void updateEndpointsCache()
 
             endpointsCache = Collections.unmodifiableList(endpointsList);
         }
+
+        receiversChanged();
+    }
+
+    /**
+     * Notifies this {@link Conference} that the set of local endpoints which
+     * can receive packets, or the types of packets which they accept, may have
+     * changed. Discards the fan-out lists computed so far, so that they are
+     * re-computed when the next packet from each source is sent out.
+     */
+    void receiversChanged()
+    {
+        fanOuts = new FanOuts();
+    }
+
+    /**
+     * Gets the {@link FanOut} for packets coming from a specific source
+     * endpoint, computing it if necessary.
+     *
+     * @param sourceEndpointId the ID of the source endpoint.
+     * @return the {@link FanOut} for packets coming from the specified source
+     * endpoint.
+     */
+    private FanOut getFanOut(String sourceEndpointId)
+    {
+        // Note that if the cache is replaced while we compute the FanOut, the
+        // result will be stored in the old cache and discarded, which is what
+        // we want since it may have been computed from stale state.
+        FanOuts fanOuts = this.fanOuts;
+        FanOut fanOut;
+        if (sourceEndpointId == null)
+        {
+            fanOut = fanOuts.noSource;
+            if (fanOut == null)
+            {
+                // Concurrent computations are harmless, they all produce the
+                // same result.
+                fanOut = new FanOut(endpointsCache, null);
+                fanOuts.noSource = fanOut;
+            }
+            return fanOut;
+        }
+
+        fanOut = fanOuts.bySource.get(sourceEndpointId);
+        if (fanOut == null)
+        {
+            fanOut = new FanOut(endpointsCache, sourceEndpointId);
+            FanOut existing
+                = fanOuts.bySource.putIfAbsent(sourceEndpointId, fanOut);
+            if (existing != null)
+            {
+                fanOut = existing;
+            }
+        }
+
+        return fanOut;
     }
 
     /**
@@ -898,11 +1026,23 @@ else if (Endpoint.SELECTED_ENDPOINTS_PROPERTY_NAME
      */
     void endpointExpired(AbstractEndpoint endpoint)
     {
+        // The SSRCs of an endpoint are not removed individually on expiration,
+        // so we drop all mappings which point to it. This is not on the
+        // packet path and only happens once per endpoint.
+        endpointsBySsrc.removeValuesIf(e -> e == endpoint);
+        videobridge.cancelExpireCheck(endpoint);
+
         if (endpoints.remove(endpoint.getID()) != null)
         {
             updateEndpointsCache();
             endpointsChanged();
         }
+
+        EventAdmin eventAdmin = getEventAdmin();
+        if (eventAdmin != null)
+        {
+            eventAdmin.sendEvent(EventFactory.endpointExpired(endpoint));
+        }
     }
 
     /**
@@ -918,6 +1058,7 @@ public void addEndpoint(AbstractEndpoint endpoint)
             updateEndpointsCache();
         }
 
+        videobridge.scheduleExpireCheck(endpoint);
         endpointsChanged();
     }
 
@@ -1050,7 +1191,22 @@ public boolean shouldExpire()
     {
         // Allow a conference to have no endpoints in the first 20 seconds.
         return getEndpointCount() == 0
-                && (System.currentTimeMillis() - creationTime > 20000);
+                && (System.currentTimeMillis() - creationTime
+                    > EMPTY_CONFERENCE_GRACE_PERIOD_MS);
+    }
+
+    /**
+     * Gets the earliest time at which {@link #shouldExpire()} may start to
+     * return {@code true}, unless endpoints leave in the meantime.
+     *
+     * @return the time in milliseconds, or -1 if this conference has
+     * endpoints.
+     */
+    long getEarliestExpireTimeMs()
+    {
+        return getEndpointCount() == 0
+                ? creationTime + EMPTY_CONFERENCE_GRACE_PERIOD_MS + 1
+                : -1;
     }
 
     /**
@@ -1077,21 +1233,44 @@ public ConferenceShim getShim()
      */
     private void sendOut(PacketInfo packetInfo)
     {
-        String sourceEndpointId = packetInfo.getEndpointId();
+        Packet packet = packetInfo.getPacket();
+        FanOut fanOut = getFanOut(packetInfo.getEndpointId());
+
+        // The transport and media type checks from Endpoint#wants have already
+        // been performed when the FanOut was computed, so audio is accepted by
+        // all receivers and video only needs to go through the bitrate
+        // controller.
+        boolean isAudio = packet instanceof AudioRtpPacket;
+        VideoRtpPacket videoPacket
+            = packet instanceof VideoRtpPacket ? (VideoRtpPacket) packet : null;
+        Endpoint[] receivers
+            = isAudio ? fanOut.audioReceivers
+                : videoPacket != null ? fanOut.videoReceivers
+                : fanOut.receivers;
+
+        // The tentacle only reads the packet and is done with it when send
+        // returns, so it can use the original buffer before anyone else gets
+        // a chance to modify it, and we don't need to clone it.
+        if (tentacle != null && tentacle.wants(packetInfo))
+        {
+            tentacle.sendShared(packetInfo);
+        }
+
         // We want to avoid calling 'clone' for the last receiver of this packet
         // since it's unnecessary.  To do so, we'll wait before we clone and send
         // to an interested handler until after we've determined another handler
         // is also interested in the packet.  We'll give the last handler the
         // original packet (without cloning).
         PotentialPacketHandler prevHandler = null;
-        for (Endpoint endpoint : endpointsCache)
+        for (Endpoint endpoint : receivers)
         {
-            if (endpoint.getID().equals(sourceEndpointId))
-            {
-                continue;
-            }
+            boolean wants
+                = isAudio
+                    || (videoPacket != null
+                        ? endpoint.wantsVideo(videoPacket)
+                        : endpoint.wants(packetInfo));
 
-            if (endpoint.wants(packetInfo))
+            if (wants)
             {
                 if (prevHandler != null)
                 {
@@ -1100,14 +1279,6 @@ private void sendOut(PacketInfo packetInfo)
                 prevHandler = endpoint;
             }
         }
-        if (tentacle != null && tentacle.wants(packetInfo))
-        {
-            if (prevHandler != null)
-            {
-                prevHandler.send(packetInfo.clone());
-            }
-            prevHandler = tentacle;
-        }
 
         if (prevHandler != null)
         {
@@ -1115,11 +1286,34 @@ private void sendOut(PacketInfo packetInfo)
         }
         else
         {
-            // No one wanted the packet, so the buffer is now free!
+            // No one (other than possibly the tentacle, which doesn't take
+            // ownership) wanted the packet, so the buffer is now free!
             ByteBufferPool.returnBuffer(packetInfo.getPacket().getBuffer());
         }
     }
 
+    /**
+     * Notifies this conference that the set of endpoints whose video one of
+     * its local endpoints wants to receive has changed.
+     */
+    public void endpointVideoInterestChanged()
+    {
+        OctoTentacle tentacle = this.tentacle;
+        if (tentacle != null)
+        {
+            tentacle.videoInterestChanged();
+        }
+    }
+
+    /**
+     * Gets the shared snapshots of the bitrates of the tracks in this
+     * conference.
+     */
+    public TrackBitrateSnapshots getTrackBitrateSnapshots()
+    {
+        return trackBitrateSnapshots;
+    }
+
     /**
      * Gets the audio level listener.
      */
@@ -1162,7 +1356,6 @@ else if (packet instanceof RtcpFbPliPacket
                 ? ((RtcpFbPliPacket) packet).getMediaSourceSsrc()
                 : ((RtcpFbFirPacket) packet).getMediaSenderSsrc();
 
-            // XXX we could make this faster with a map
             AbstractEndpoint targetEndpoint
                 = findEndpointByReceiveSSRC(mediaSsrc);
 
@@ -1223,6 +1416,9 @@ public JSONObject getDebugState(boolean full, String endpointId)
             debugState.put("includeInStatistics", includeInStatistics);
             debugState.put("statistics", statistics.getJson());
             //debugState.put("encodingsManager", encodingsManager.getDebugState());
+            debugState.put(
+                    "trackBitrateSnapshots",
+                    trackBitrateSnapshots.getDebugState());
             OctoTentacle tentacle = this.tentacle;
             debugState.put(
                     "tentacle",
@@ -1298,6 +1494,92 @@ private JSONObject getJson()
         }
     }
 
+    /**
+     * The {@link FanOut}s computed for the current set of receivers.
+     */
+    private static class FanOuts
+    {
+        /**
+         * The {@link FanOut}s for packets from each source endpoint, keyed by
+         * the ID of the source endpoint.
+         */
+        private final Map<String, FanOut> bySource
+            = new ConcurrentHashMap<>();
+
+        /**
+         * The {@link FanOut} for packets without a source endpoint, or
+         * {@code null} if it has not been computed.
+         */
+        private volatile FanOut noSource;
+    }
+
+    /**
+     * The local endpoints which may want to receive the packets of a specific
+     * source endpoint, i.e. all local endpoints except for the source itself,
+     * which have a connected transport. The bitrate controller of each
+     * receiver still decides whether to accept each video packet (it needs to
+     * see all packets of the tracks that it projects, even if they end up
+     * being dropped).
+     */
+    private static class FanOut
+    {
+        /**
+         * An empty array of {@link Endpoint}s.
+         */
+        private static final Endpoint[] EMPTY_ENDPOINT_ARRAY = new Endpoint[0];
+
+        /**
+         * The endpoints which may want non-RTP packets (e.g. RTCP) from the
+         * source.
+         */
+        private final Endpoint[] receivers;
+
+        /**
+         * The endpoints which accept audio.
+         */
+        private final Endpoint[] audioReceivers;
+
+        /**
+         * The endpoints which accept video.
+         */
+        private final Endpoint[] videoReceivers;
+
+        /**
+         * Initializes a new {@link FanOut} instance.
+         *
+         * @param endpoints the local endpoints of the conference.
+         * @param sourceEndpointId the ID of the source endpoint.
+         */
+        private FanOut(List<Endpoint> endpoints, String sourceEndpointId)
+        {
+            List<Endpoint> receivers = new ArrayList<>(endpoints.size());
+            List<Endpoint> audioReceivers = new ArrayList<>(endpoints.size());
+            List<Endpoint> videoReceivers = new ArrayList<>(endpoints.size());
+            for (Endpoint endpoint : endpoints)
+            {
+                if (endpoint.getID().equals(sourceEndpointId)
+                        || !endpoint.isTransportConnected())
+                {
+                    continue;
+                }
+
+                receivers.add(endpoint);
+                if (endpoint.acceptsAudio())
+                {
+                    audioReceivers.add(endpoint);
+                }
+                if (endpoint.acceptsVideo())
+                {
+                    videoReceivers.add(endpoint);
+                }
+            }
+
+            this.receivers = receivers.toArray(EMPTY_ENDPOINT_ARRAY);
+            this.audioReceivers = audioReceivers.toArray(EMPTY_ENDPOINT_ARRAY);
+            this.videoReceivers = videoReceivers.toArray(EMPTY_ENDPOINT_ARRAY);
+        }
+    }
+
     /**
      * This is a no-op diagnostic context (one that will record nothing) meant
      * to disable logging of time-series for health checks.
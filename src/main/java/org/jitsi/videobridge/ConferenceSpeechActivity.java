@@ -15,13 +15,16 @@
  */
 package org.jitsi.videobridge;
 
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
+import org.jitsi.utils.concurrent.*;
 import org.jitsi.utils.dsi.*;
 import org.jitsi.utils.logging.*;
 import org.jitsi.videobridge.util.*;
 import org.json.simple.*;
 
 import java.util.*;
-import java.util.stream.*;
+import java.util.concurrent.*;
 
 /**
  * Represents the speech activity of the <tt>Endpoint</tt>s in a
@@ -36,6 +39,68 @@
 {
     private static final Logger classLogger
             = Logger.getLogger(ConferenceSpeechActivity.class);
+
+    /**
+     * The name of the property which controls the minimum interval (in
+     * milliseconds) between two propagations of dominant speaker and
+     * endpoint ordering changes to the endpoints of the conference. Changes
+     * which occur within the interval are merged into a single update.
+     */
+    public static final String MIN_UPDATE_INTERVAL_MS_PNAME
+        = "org.jitsi.videobridge.SPEECH_ACTIVITY_MIN_UPDATE_INTERVAL_MS";
+
+    /**
+     * The default value for {@link #MIN_UPDATE_INTERVAL_MS_PNAME}.
+     */
+    private static final long MIN_UPDATE_INTERVAL_MS_DEFAULT = 200;
+
+    /**
+     * The minimum interval (in milliseconds) between two updates.
+     */
+    private static final long MIN_UPDATE_INTERVAL_MS;
+
+    /**
+     * The name of the property which controls the interval (in milliseconds)
+     * at which the audio levels received in a conference are fed to its
+     * dominant speaker identification.
+     */
+    public static final String AUDIO_LEVEL_DRAIN_INTERVAL_MS_PNAME
+        = "org.jitsi.videobridge.AUDIO_LEVEL_DRAIN_INTERVAL_MS";
+
+    /**
+     * The default value for {@link #AUDIO_LEVEL_DRAIN_INTERVAL_MS_PNAME}.
+     */
+    private static final long AUDIO_LEVEL_DRAIN_INTERVAL_MS_DEFAULT = 20;
+
+    /**
+     * The interval (in milliseconds) at which audio levels are drained.
+     */
+    private static final long AUDIO_LEVEL_DRAIN_INTERVAL_MS;
+
+    /**
+     * The number of audio levels which {@link #audioLevels} can hold, i.e.
+     * roughly one second of audio from 50 senders when drained every 20ms.
+     */
+    private static final int AUDIO_LEVEL_BUFFER_CAPACITY = 2048;
+
+    static
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+        MIN_UPDATE_INTERVAL_MS
+            = cfg != null
+                ? cfg.getLong(
+                    MIN_UPDATE_INTERVAL_MS_PNAME,
+                    MIN_UPDATE_INTERVAL_MS_DEFAULT)
+                : MIN_UPDATE_INTERVAL_MS_DEFAULT;
+        AUDIO_LEVEL_DRAIN_INTERVAL_MS
+            = Math.max(
+                1,
+                cfg != null
+                    ? cfg.getLong(
+                        AUDIO_LEVEL_DRAIN_INTERVAL_MS_PNAME,
+                        AUDIO_LEVEL_DRAIN_INTERVAL_MS_DEFAULT)
+                    : AUDIO_LEVEL_DRAIN_INTERVAL_MS_DEFAULT);
+    }
     /**
      * The <tt>Logger</tt> used by the <tt>ConferenceSpeechActivity</tt> class
      * and its instances to print debug information.
@@ -132,6 +197,22 @@ private static void resolveSSRCAsEndpoint(
     private DominantSpeakerIdentification dominantSpeakerIdentification
             = new DominantSpeakerIdentification();
 
+    /**
+     * The audio levels received in {@link #conference} which have not been
+     * fed to {@link #dominantSpeakerIdentification} yet. Written by the
+     * packet-processing threads and drained by {@link #audioLevelDrainer}, so
+     * that the former never run the speaker identification logic.
+     */
+    private final AudioLevelBuffer audioLevels
+        = new AudioLevelBuffer(AUDIO_LEVEL_BUFFER_CAPACITY);
+
+    /**
+     * The task which periodically feeds {@link #audioLevels} to
+     * {@link #dominantSpeakerIdentification}.
+     */
+    private final AudioLevelDrainer audioLevelDrainer
+        = new AudioLevelDrainer();
+
     /**
      * The <tt>Conference</tt> for which this instance represents the speech
      * activity of its <tt>Endpoint</tt>s. The reference will be set to
@@ -142,11 +223,24 @@ private static void resolveSSRCAsEndpoint(
     private Conference conference;
 
     /**
-     * The ordered list of <tt>Endpoint</tt>s participating in
-     * {@link #conference} with the dominant (speaker) <tt>Endpoint</tt> at the
-     * beginning of the list i.e. the dominant speaker history.
+     * The <tt>Endpoint</tt>s participating in {@link #conference} ordered by
+     * the dominant speaker history, with the dominant (speaker)
+     * <tt>Endpoint</tt> at the beginning. Supports membership checks and
+     * moving an <tt>Endpoint</tt> to the front in constant time.
+     */
+    private final SpeakerRanking ranking = new SpeakerRanking();
+
+    /**
+     * An immutable snapshot of {@link #ranking}, republished on every change.
+     */
+    private volatile List<AbstractEndpoint> endpoints
+        = Collections.emptyList();
+
+    /**
+     * The IDs of the <tt>Endpoint</tt>s in {@link #endpoints}, in the same
+     * order. Immutable, so it is shared by all receivers of the conference.
      */
-    private final List<AbstractEndpoint> endpoints = new ArrayList<>();
+    private volatile List<String> endpointIds = Collections.emptyList();
 
     /**
      * The <tt>Object</tt> used to synchronize the access to the state of this
@@ -154,6 +248,44 @@ private static void resolveSSRCAsEndpoint(
      */
     private final Object syncRoot = new Object();
 
+    /**
+     * Merges the changes of the dominant speaker and of the ordering of
+     * {@link #endpoints} into rate-limited updates of the conference.
+     */
+    private final SpeechActivityUpdateCoalescer<AbstractEndpoint> updates
+        = new SpeechActivityUpdateCoalescer<>(
+            MIN_UPDATE_INTERVAL_MS,
+            ConferenceSpeechActivity::runAfter,
+            System::currentTimeMillis,
+            new SpeechActivityUpdateCoalescer.Handler<AbstractEndpoint>()
+            {
+                @Override
+                public AbstractEndpoint getDominantEndpoint()
+                {
+                    return ConferenceSpeechActivity.this.getDominantEndpoint();
+                }
+
+                @Override
+                public void update(
+                    boolean dominantSpeakerChanged, boolean endpointsChanged)
+                {
+                    fireUpdate(dominantSpeakerChanged, endpointsChanged);
+                }
+
+                @Override
+                public void updateSuppressed()
+                {
+                    Conference conference
+                        = ConferenceSpeechActivity.this.conference;
+                    if (conference != null)
+                    {
+                        conference.getVideobridge().getStatistics()
+                            .totalSuppressedSpeechActivityUpdates
+                                .incrementAndGet();
+                    }
+                }
+            });
+
     /**
      * Initializes a new <tt>ConferenceSpeechActivity</tt> instance which is to
      * represent the speech activity in a specific <tt>Conference</tt>.
@@ -168,6 +300,8 @@ public ConferenceSpeechActivity(Conference conference)
 
         dominantSpeakerIdentification
                 .addActiveSpeakerChangedListener(activeSpeakerChangedListener);
+        TaskPools.RECURRING_EXECUTOR.registerRecurringRunnable(
+                audioLevelDrainer, conference.getID());
     }
 
     /**
@@ -198,21 +332,19 @@ private void activeSpeakerChanged(long ssrc)
             synchronized (syncRoot)
             {
                 // Move this endpoint to the top of our sorted list
-                if (!endpoints.remove(endpoint))
+                if (endpoint == null || !ranking.contains(endpoint))
                 {
                     logger.warn("Got active speaker notification for an unknown"
                             + " endpoint! Ignoring");
                     return;
                 }
-                endpoints.add(0, endpoint);
-
-                TaskPools.IO_POOL.submit(() ->
+                boolean orderChanged = ranking.moveToFront(endpoint);
+                if (orderChanged)
                 {
-                    if (conference != null)
-                    {
-                        conference.dominantSpeakerChanged();
-                    }
-                });
+                    publishSnapshot();
+                }
+
+                updates.scheduleUpdate(true, orderChanged);
             }
         }
     }
@@ -300,6 +432,8 @@ else if (speakers instanceof JSONArray)
 
     void expire()
     {
+        TaskPools.RECURRING_EXECUTOR.deRegisterRecurringRunnable(
+                audioLevelDrainer);
         synchronized (syncRoot)
         {
             if (dominantSpeakerIdentification != null)
@@ -322,10 +456,8 @@ void expire()
      */
     public AbstractEndpoint getDominantEndpoint()
     {
-        synchronized (syncRoot)
-        {
-            return endpoints.isEmpty() ? null : endpoints.get(0);
-        }
+        List<AbstractEndpoint> endpoints = this.endpoints;
+        return endpoints.isEmpty() ? null : endpoints.get(0);
     }
 
     /**
@@ -336,32 +468,49 @@ public AbstractEndpoint getDominantEndpoint()
      *
      * @return the ordered list of <tt>Endpoint</tt>s participating in the
      * multipoint conference represented by this instance with the dominant
-     * (speaker) <tt>Endpoint</tt> at the beginning of the list
+     * (speaker) <tt>Endpoint</tt> at the beginning of the list. The list is an
+     * immutable snapshot.
      */
     public List<AbstractEndpoint> getEndpoints()
     {
-        synchronized (syncRoot)
-        {
-            //TODO(brian): make a copy?
-            return endpoints;
-        }
+        return endpoints;
     }
 
+    /**
+     * Gets the IDs of the <tt>Endpoint</tt>s in the order of
+     * {@link #getEndpoints()}.
+     *
+     * @return an immutable snapshot of the ordered list of <tt>Endpoint</tt>
+     * IDs, which is shared by all callers until the order changes.
+     */
     public List<String> getEndpointIds()
     {
+        return endpointIds;
+    }
 
-        synchronized (syncRoot)
+    /**
+     * Republishes {@link #endpoints} and {@link #endpointIds} from
+     * {@link #ranking}. Must be called with {@link #syncRoot} held.
+     */
+    private void publishSnapshot()
+    {
+        List<AbstractEndpoint> newEndpoints = ranking.toList();
+        List<String> newEndpointIds = new ArrayList<>(newEndpoints.size());
+        for (AbstractEndpoint endpoint : newEndpoints)
         {
-           return endpoints.stream()
-                .map(AbstractEndpoint::getID)
-                .collect(Collectors.toList());
+            newEndpointIds.add(endpoint.getID());
         }
+
+        endpoints = Collections.unmodifiableList(newEndpoints);
+        endpointIds = Collections.unmodifiableList(newEndpointIds);
     }
 
     /**
      * Notifies this instance that a new audio level was received or measured by
      * an <tt>Endpoint</tt> for an RTP stream with a specific synchronization
-     * source identifier/SSRC.
+     * source identifier/SSRC. This is called on the packet-processing path, so
+     * the level is only queued, and it is fed to the dominant speaker
+     * identification by {@link #audioLevelDrainer}.
      *
      * @param ssrc the synchronization source identifier/SSRC of the RTP stream
      * for which a new audio level was received or measured by the specified
@@ -372,11 +521,7 @@ public List<String> getEndpointIds()
      */
     public void levelChanged(long ssrc, int level)
     {
-        DominantSpeakerIdentification dsi = this.dominantSpeakerIdentification;
-        if (dsi != null)
-        {
-            dominantSpeakerIdentification.levelChanged(ssrc, level);
-        }
+        audioLevels.add(ssrc, level);
     }
 
     /**
@@ -384,52 +529,88 @@ public void levelChanged(long ssrc, int level)
      */
     public void endpointsChanged()
     {
-        boolean endpointsListChanged = false;
-        boolean dominantSpeakerChanged = false;
+        boolean endpointsListChanged;
         // The list of endpoints may have changed, sync our list to make
         // sure it matches.
         List<AbstractEndpoint> conferenceEndpointsCopy
                 = conference.getEndpoints();
+        Set<AbstractEndpoint> conferenceEndpointsSet
+                = new HashSet<>(conferenceEndpointsCopy);
         synchronized (syncRoot)
         {
             // Remove any endpoints we have that are no longer in the
             // conference
-            String previousDominantSpeaker
-                = endpoints.isEmpty() ? null : endpoints.get(0).getID();
+            AbstractEndpoint previousDominantSpeaker = ranking.first();
             endpointsListChanged
-                = endpoints.removeIf(
-                        ep -> !conferenceEndpointsCopy.contains(ep));
+                = ranking.retainAll(conferenceEndpointsSet);
             // Add any endpoints from the conf we don't have to the end
             // of our list
             for (AbstractEndpoint ep : conferenceEndpointsCopy)
             {
-                if (!endpoints.contains(ep))
+                if (ranking.addLast(ep))
                 {
-                    endpoints.add(ep);
                     endpointsListChanged = true;
                 }
             }
-            String newDominantSpeaker
-                = endpoints.isEmpty() ? null : endpoints.get(0).getID();
-            dominantSpeakerChanged
-                = !Objects.equals(previousDominantSpeaker, newDominantSpeaker);
+            if (endpointsListChanged)
+            {
+                publishSnapshot();
+            }
+            boolean dominantSpeakerChanged
+                = previousDominantSpeaker != ranking.first();
+
+            if (dominantSpeakerChanged || endpointsListChanged)
+            {
+                updates.scheduleUpdate(
+                        dominantSpeakerChanged, endpointsListChanged);
+            }
         }
+    }
 
-        if (dominantSpeakerChanged || endpointsListChanged)
+    /**
+     * Runs a task on the IO pool after a delay.
+     *
+     * @param task the task.
+     * @param delayMs the delay in milliseconds.
+     */
+    private static void runAfter(Runnable task, long delayMs)
+    {
+        if (delayMs <= 0)
         {
-            final boolean finalDominantSpeakerChanged = dominantSpeakerChanged;
-            final boolean finalEndpointsChanged = endpointsListChanged;
-            TaskPools.IO_POOL.submit(() -> {
-                if (finalDominantSpeakerChanged)
-                {
-                    conference.dominantSpeakerChanged();
-                }
-                if (finalEndpointsChanged)
-                {
-                    conference.speechActivityEndpointsChanged();
-                }
+            TaskPools.IO_POOL.submit(task);
+        }
+        else
+        {
+            TaskPools.SCHEDULED_POOL.schedule(
+                    () -> TaskPools.IO_POOL.submit(task),
+                    delayMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
 
-            });
+    /**
+     * Propagates an update to the conference, i.e. announces the dominant
+     * speaker and/or pushes the current ordering of the endpoints.
+     *
+     * @param dominantSpeakerChanged whether to announce the dominant speaker.
+     * @param endpointsChanged whether to push the ordering of the endpoints.
+     */
+    private void fireUpdate(
+            boolean dominantSpeakerChanged, boolean endpointsChanged)
+    {
+        Conference conference = this.conference;
+        if (conference == null)
+        {
+            return;
+        }
+
+        if (dominantSpeakerChanged)
+        {
+            conference.dominantSpeakerChanged();
+        }
+        if (endpointsChanged)
+        {
+            conference.speechActivityEndpointsChanged();
         }
     }
 
@@ -449,7 +630,205 @@ public JSONObject getDebugState()
         debugState.put(
                 "dominantSpeakerIdentification",
                 dsi == null ? null : dsi.doGetJSON());
+        debugState.put("numUpdates", updates.getNumUpdates());
+        debugState.put(
+                "numSuppressedUpdates",
+                updates.getNumSuppressedUpdates());
+        debugState.put(
+                "numAudioLevelsOverwritten",
+                audioLevels.getNumOverwritten());
 
         return debugState;
     }
+
+    /**
+     * Periodically feeds the queued audio levels to
+     * {@link #dominantSpeakerIdentification} in a batch.
+     */
+    private class AudioLevelDrainer
+        extends PeriodicRunnable
+    {
+        private AudioLevelDrainer()
+        {
+            super(AUDIO_LEVEL_DRAIN_INTERVAL_MS);
+        }
+
+        @Override
+        public void run()
+        {
+            super.run();
+
+            DominantSpeakerIdentification dsi = dominantSpeakerIdentification;
+            if (dsi != null)
+            {
+                audioLevels.drain(dsi::levelChanged);
+            }
+        }
+    }
+
+    /**
+     * An ordered set of <tt>Endpoint</tt>s, kept as a doubly-linked list
+     * indexed by a hash map, so that membership checks, removals and moves to
+     * the front take constant time. Not thread-safe.
+     */
+    private static class SpeakerRanking
+    {
+        /**
+         * The list node of each <tt>Endpoint</tt>.
+         */
+        private final Map<AbstractEndpoint, Node> nodes = new HashMap<>();
+
+        /**
+         * The first (most recent dominant speaker) node, or <tt>null</tt>.
+         */
+        private Node head;
+
+        /**
+         * The last node, or <tt>null</tt>.
+         */
+        private Node tail;
+
+        /**
+         * @return <tt>true</tt> if <tt>endpoint</tt> is in this ranking.
+         */
+        boolean contains(AbstractEndpoint endpoint)
+        {
+            return nodes.containsKey(endpoint);
+        }
+
+        /**
+         * @return the first <tt>Endpoint</tt>, or <tt>null</tt> if empty.
+         */
+        AbstractEndpoint first()
+        {
+            return head == null ? null : head.endpoint;
+        }
+
+        /**
+         * Adds an <tt>Endpoint</tt> at the end, unless it is already present.
+         *
+         * @return <tt>true</tt> if the <tt>Endpoint</tt> was added.
+         */
+        boolean addLast(AbstractEndpoint endpoint)
+        {
+            if (nodes.containsKey(endpoint))
+            {
+                return false;
+            }
+
+            Node node = new Node(endpoint);
+            nodes.put(endpoint, node);
+            linkLast(node);
+            return true;
+        }
+
+        /**
+         * Moves an <tt>Endpoint</tt> which is in this ranking to the front.
+         *
+         * @return <tt>true</tt> if the order changed.
+         */
+        boolean moveToFront(AbstractEndpoint endpoint)
+        {
+            Node node = nodes.get(endpoint);
+            if (node == null || node == head)
+            {
+                return false;
+            }
+
+            unlink(node);
+            node.next = head;
+            head.prev = node;
+            head = node;
+            return true;
+        }
+
+        /**
+         * Removes the <tt>Endpoint</tt>s which are not in a specific set.
+         *
+         * @return <tt>true</tt> if any <tt>Endpoint</tt>s were removed.
+         */
+        boolean retainAll(Set<AbstractEndpoint> endpoints)
+        {
+            boolean removed = false;
+            for (Node node = head; node != null; )
+            {
+                Node next = node.next;
+                if (!endpoints.contains(node.endpoint))
+                {
+                    nodes.remove(node.endpoint);
+                    unlink(node);
+                    removed = true;
+                }
+                node = next;
+            }
+            return removed;
+        }
+
+        /**
+         * @return a new list with the <tt>Endpoint</tt>s in order.
+         */
+        List<AbstractEndpoint> toList()
+        {
+            List<AbstractEndpoint> list = new ArrayList<>(nodes.size());
+            for (Node node = head; node != null; node = node.next)
+            {
+                list.add(node.endpoint);
+            }
+            return list;
+        }
+
+        private void linkLast(Node node)
+        {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null)
+            {
+                head = node;
+            }
+            else
+            {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        private void unlink(Node node)
+        {
+            if (node.prev == null)
+            {
+                head = node.next;
+            }
+            else
+            {
+                node.prev.next = node.next;
+            }
+            if (node.next == null)
+            {
+                tail = node.prev;
+            }
+            else
+            {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        /**
+         * A node in the list.
+         */
+        private static class Node
+        {
+            private final AbstractEndpoint endpoint;
+
+            private Node prev;
+
+            private Node next;
+
+            private Node(AbstractEndpoint endpoint)
+            {
+                this.endpoint = endpoint;
+            }
+        }
+    }
 }
@@ -31,6 +31,8 @@
 import org.jitsi.rtp.*;
 import org.jitsi.rtp.extensions.*;
 import org.jitsi.rtp.rtp.*;
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
 import org.jitsi.utils.*;
 import org.jitsi.utils.logging.*;
 import org.jitsi.utils.queue.*;
@@ -72,6 +74,60 @@ public class DtlsTransport extends IceTransport
     private static final Predicate<Packet> NON_DTLS_PREDICATE
             = DTLS_PREDICATE.negate();
 
+    /**
+     * The name of the property which enables receiving packets directly into
+     * the buffer which is passed to the incoming pipeline (instead of into a
+     * single receive buffer from which every packet is copied). This saves a
+     * copy for every packet, but the buffers are larger than the packets they
+     * hold, so it works best with adaptive size classes in
+     * {@link ByteBufferPool}. When enabled, a size class for
+     * {@link #ZERO_COPY_BUFFER_SIZE} is added to {@link ByteBufferPool} (the
+     * default classes are too small for it).
+     */
+    public static final String ZERO_COPY_RECEIVE_PNAME
+        = "org.jitsi.videobridge.DtlsTransport.ZERO_COPY_RECEIVE";
+
+    /**
+     * Whether zero-copy receive is enabled by default.
+     */
+    private static final boolean ZERO_COPY_RECEIVE_DEFAULT = false;
+
+    /**
+     * Whether to receive packets directly into the buffers passed to the
+     * incoming pipeline.
+     */
+    private static final boolean ZERO_COPY_RECEIVE;
+
+    /**
+     * The maximum size of a packet that we read from the socket.
+     */
+    private static final int MAX_RECEIVE_SIZE = 1500;
+
+    /**
+     * The size of the buffers which packets are received in when
+     * {@link #ZERO_COPY_RECEIVE} is enabled: the maximum packet size, plus
+     * room for the headers which may need to be added.
+     */
+    private static final int ZERO_COPY_BUFFER_SIZE
+        = MAX_RECEIVE_SIZE +
+            RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET +
+            RtpPacket.BYTES_TO_LEAVE_AT_END_OF_PACKET;
+
+    static
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+        ZERO_COPY_RECEIVE
+            = cfg != null
+                ? cfg.getBoolean(
+                    ZERO_COPY_RECEIVE_PNAME, ZERO_COPY_RECEIVE_DEFAULT)
+                : ZERO_COPY_RECEIVE_DEFAULT;
+        if (ZERO_COPY_RECEIVE)
+        {
+            // Otherwise every receive buffer would be allocated anew.
+            ByteBufferPool.requireSizeClass(ZERO_COPY_BUFFER_SIZE);
+        }
+    }
+
     public static final PacketDelayStats packetDelayStats = new PacketDelayStats();
     /**
      * An average of all of the individual bridge jitter values calculated by the
@@ -141,6 +197,9 @@ public DtlsTransport(Endpoint endpoint)
                     "DTLS handshake complete. Got SRTP profile " +
                     chosenSrtpProfile);
             endpoint.setSrtpInformation(chosenSrtpProfile, tlsRole, keyingMaterial);
+            // The transport is now connected (see isConnected), so the
+            // endpoint can start receiving packets.
+            endpoint.getConference().receiversChanged();
             dtlsConnectedSubscribers.forEach(Runnable::run);
             return Unit.INSTANCE;
         });
@@ -377,52 +436,128 @@ private void installIncomingPacketReader(DatagramSocket socket)
         // (does a bit of processing for each packet) but I think it's little
         // enough (it'll only be a bit of the DTLS path) that running it in the
         // IO pool is fine
+        // The reader blocks in receive() for the lifetime of the transport,
+        // so it holds an IO pool thread per endpoint. The ICE socket can't be
+        // multiplexed with a Selector, but with
+        // TaskPools.IO_POOL_USE_VIRTUAL_THREADS_PNAME (on a runtime with
+        // virtual threads) each reader only holds a cheap virtual thread.
         TaskPools.IO_POOL.submit(() -> {
+            if (ZERO_COPY_RECEIVE)
+            {
+                readPacketsZeroCopy(socket);
+            }
+            else
+            {
+                readPackets(socket);
+            }
+        });
+    }
 
-            // We need this buffer to be 1500 bytes because we don't know how
-            // big the received packet will be. But we don't want to allocate
-            // large buffers for all packets.
-            byte[] receiveBuf = ByteBufferPool.getBuffer(1500);
-            DatagramPacket p = new DatagramPacket(receiveBuf, 0, 1500);
+    /**
+     * Reads packets from a socket into a single receive buffer, and copies each
+     * of them into a buffer of the appropriate size.
+     * @param socket the socket to read from.
+     */
+    private void readPackets(DatagramSocket socket)
+    {
+        // We need this buffer to be 1500 bytes because we don't know how
+        // big the received packet will be. But we don't want to allocate
+        // large buffers for all packets.
+        byte[] receiveBuf = ByteBufferPool.getBuffer(MAX_RECEIVE_SIZE);
+        DatagramPacket p = new DatagramPacket(receiveBuf, 0, MAX_RECEIVE_SIZE);
 
-            while (!closed)
+        while (!closed)
+        {
+            try
             {
-                try
-                {
-                    socket.receive(p);
-                    int len = p.getLength();
-                    byte[] buf
-                        = ByteBufferPool.getBuffer(
-                                len +
-                                RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET +
-                                RtpPacket.BYTES_TO_LEAVE_AT_END_OF_PACKET);
-                    System.arraycopy(
-                            receiveBuf, p.getOffset(),
-                            buf, RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET,
-                            len);
-                    Packet pkt
-                        = new UnparsedPacket(
-                                buf,
-                                RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET,
-                                len);
-                    PacketInfo pktInfo = new PacketInfo(pkt);
-                    pktInfo.setReceivedTime(System.currentTimeMillis());
-                    incomingPipelineRoot.processPacket(pktInfo);
-
-                    p.setData(receiveBuf, 0, receiveBuf.length);
-                }
-                catch (SocketClosedException e)
-                {
-                    logger.info(logPrefix + "Socket closed, stopping reader.");
-                    break;
-                }
-                catch (IOException e)
-                {
-                    logger.warn(logPrefix + "Stopping reader: ", e);
-                    break;
-                }
+                socket.receive(p);
+                int len = p.getLength();
+                byte[] buf
+                    = ByteBufferPool.getBuffer(
+                            len +
+                            RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET +
+                            RtpPacket.BYTES_TO_LEAVE_AT_END_OF_PACKET);
+                System.arraycopy(
+                        receiveBuf, p.getOffset(),
+                        buf, RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET,
+                        len);
+                processReceivedPacket(buf, len);
+
+                p.setData(receiveBuf, 0, receiveBuf.length);
             }
-        });
+            catch (SocketClosedException e)
+            {
+                logger.info(logPrefix + "Socket closed, stopping reader.");
+                break;
+            }
+            catch (IOException e)
+            {
+                logger.warn(logPrefix + "Stopping reader: ", e);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reads packets from a socket directly into buffers (with room reserved
+     * for the headers which may need to be added in front of the packet) which
+     * are then passed to the incoming pipeline without copying.
+     * @param socket the socket to read from.
+     */
+    private void readPacketsZeroCopy(DatagramSocket socket)
+    {
+        byte[] buf = ByteBufferPool.getBuffer(ZERO_COPY_BUFFER_SIZE);
+        DatagramPacket p
+            = new DatagramPacket(
+                    buf,
+                    RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET,
+                    MAX_RECEIVE_SIZE);
+
+        while (!closed)
+        {
+            try
+            {
+                socket.receive(p);
+                processReceivedPacket(buf, p.getLength());
+
+                // The pipeline now owns the buffer.
+                buf = ByteBufferPool.getBuffer(ZERO_COPY_BUFFER_SIZE);
+                p.setData(
+                        buf,
+                        RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET,
+                        MAX_RECEIVE_SIZE);
+            }
+            catch (SocketClosedException e)
+            {
+                logger.info(logPrefix + "Socket closed, stopping reader.");
+                ByteBufferPool.returnBuffer(buf);
+                break;
+            }
+            catch (IOException e)
+            {
+                logger.warn(logPrefix + "Stopping reader: ", e);
+                ByteBufferPool.returnBuffer(buf);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Passes a packet which was read from the socket to the incoming pipeline.
+     * @param buf the buffer which contains the packet at offset
+     * {@link RtpPacket#BYTES_TO_LEAVE_AT_START_OF_PACKET}.
+     * @param len the length of the packet.
+     */
+    private void processReceivedPacket(byte[] buf, int len)
+    {
+        Packet pkt
+            = new UnparsedPacket(
+                    buf,
+                    RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET,
+                    len);
+        PacketInfo pktInfo = new PacketInfo(pkt);
+        pktInfo.setReceivedTime(System.currentTimeMillis());
+        incomingPipelineRoot.processPacket(pktInfo);
     }
 
     @Override
@@ -468,6 +603,9 @@ protected void onIceFailed()
         endpoint.getConference().getVideobridge().getStatistics()
                 .totalIceFailed.incrementAndGet();
         endpoint.getConference().getStatistics().hasIceFailedEndpoint = true;
+        // The endpoint can now be expired, no need to wait for its deadline.
+        endpoint.getConference().getVideobridge()
+                .scheduleExpireCheck(endpoint);
     }
 
     /**
@@ -550,6 +688,14 @@ private class SocketSenderNode extends ConsumerNode
     {
         public DatagramSocket socket = null;
 
+        /**
+         * The {@link DatagramPacket} instance used to send packets, reused to
+         * avoid an allocation per packet. Packets are sent from the outgoing
+         * queue and from the DTLS stack, so access to it is synchronized.
+         */
+        private final DatagramPacket datagramPacket
+            = new DatagramPacket(new byte[0], 0);
+
         /**
          * Initializes a new {@link SocketSenderNode}.
          */
@@ -569,14 +715,18 @@ protected void consume(@NotNull PacketInfo packetInfo)
             overallAverageBridgeJitter.addValue(bridgeJitterStats.getJitter());
             if (socket != null)
             {
+                Packet packet = packetInfo.getPacket();
                 try
                 {
-                    socket.send(
-                        new DatagramPacket(
-                                packetInfo.getPacket().getBuffer(),
-                                packetInfo.getPacket().getOffset(),
-                                packetInfo.getPacket().getLength()));
-                    ByteBufferPool.returnBuffer(packetInfo.getPacket().getBuffer());
+                    synchronized (datagramPacket)
+                    {
+                        datagramPacket.setData(
+                                packet.getBuffer(),
+                                packet.getOffset(),
+                                packet.getLength());
+                        socket.send(datagramPacket);
+                    }
+                    ByteBufferPool.returnBuffer(packet.getBuffer());
                 }
                 catch (IOException e)
                 {
@@ -209,15 +209,6 @@
      */
     private static final boolean OPEN_DATA_LOCALLY = false;
 
-    /**
-     * The executor which runs bandwidth probing.
-     *
-     * TODO (brian): align the recurringrunnable stuff with whatever we end up
-     * doing with all the other executors.
-     */
-    private static final RecurringRunnableExecutor recurringRunnableExecutor =
-            new RecurringRunnableExecutor(Endpoint.class.getSimpleName());
-
     /**
      * Initializes a new <tt>Endpoint</tt> instance with a specific (unique)
      * identifier/ID of the endpoint of a participant in a <tt>Conference</tt>.
@@ -272,7 +263,10 @@ protected void consume(@NotNull PacketInfo packetInfo)
         conference.encodingsManager.subscribe(this);
 
         bandwidthProbing.enabled = true;
-        recurringRunnableExecutor.registerRecurringRunnable(bandwidthProbing);
+        // Bandwidth probing for all endpoints in a conference runs on the
+        // same shard.
+        TaskPools.RECURRING_EXECUTOR.registerRecurringRunnable(
+                bandwidthProbing, conference.getID());
 
         if (conference.includeInStatistics())
         {
@@ -414,7 +408,7 @@ public void setLocalSsrc(MediaType mediaType, long ssrc)
      * Checks if this endpoint's transport manager is connected.
      * @return
      */
-    private boolean isTransportConnected()
+    boolean isTransportConnected()
     {
         try
         {
@@ -484,6 +478,35 @@ else if (packet instanceof RtcpFbPliPacket ||
         return false;
     }
 
+    /**
+     * Checks whether this endpoint wants a specific video packet, assuming
+     * that the transport and channel checks done in {@link #wants(PacketInfo)}
+     * have already been performed by the caller.
+     *
+     * @param videoRtpPacket the packet.
+     * @return {@code true} if the packet should be sent to this endpoint.
+     */
+    boolean wantsVideo(VideoRtpPacket videoRtpPacket)
+    {
+        return bitrateController.accept(videoRtpPacket);
+    }
+
+    /**
+     * @return whether this endpoint accepts audio packets.
+     */
+    boolean acceptsAudio()
+    {
+        return acceptAudio;
+    }
+
+    /**
+     * @return whether this endpoint accepts video packets.
+     */
+    boolean acceptsVideo()
+    {
+        return acceptVideo;
+    }
+
     /**
      * TODO Brian
      */
@@ -619,11 +642,8 @@ public boolean shouldExpire()
         PacketIOActivity packetIOActivity
                 = this.transceiver.getPacketIOActivity();
 
-        int maxExpireTimeSecsFromChannelShims = channelShims.stream()
-                .map(ChannelShim::getExpire)
-                .mapToInt(exp -> exp)
-                .max()
-                .orElse(0);
+        int maxExpireTimeSecsFromChannelShims
+                = getMaxExpireTimeSecsFromChannelShims();
 
         long lastActivity
                 = packetIOActivity.getLastOverallActivityTimestampMs();
@@ -646,6 +666,42 @@ public boolean shouldExpire()
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getEarliestExpireTimeMs()
+    {
+        if (transportManager != null && transportManager.hasIceFailed())
+        {
+            return 0;
+        }
+
+        long lastActivity = getLastActivity();
+        if (lastActivity <= 0)
+        {
+            // Only an ICE failure can expire us.
+            return -1;
+        }
+
+        // shouldExpire() compares whole seconds of inactivity.
+        return lastActivity
+                + (getMaxExpireTimeSecsFromChannelShims() + 1) * 1000L;
+    }
+
+    /**
+     * @return the largest of the expire times (in seconds) set in the channel
+     * shims of this endpoint, or 0 if there are no channel shims.
+     */
+    private int getMaxExpireTimeSecsFromChannelShims()
+    {
+        return channelShims.stream()
+                .map(ChannelShim::getExpire)
+                .mapToInt(exp -> exp)
+                .max()
+                .orElse(0);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -685,7 +741,8 @@ public void expire()
             logger.error(logPrefix + "Exception while expiring: ", e);
         }
         bandwidthProbing.enabled = false;
-        recurringRunnableExecutor.deRegisterRecurringRunnable(bandwidthProbing);
+        TaskPools.RECURRING_EXECUTOR.deRegisterRecurringRunnable(
+                bandwidthProbing);
 
         if (transportManager != null)
         {
@@ -1313,6 +1370,7 @@ public void addReceiveSsrc(long ssrc)
             logger.debug(logPrefix + "Adding receive ssrc " + ssrc);
         }
         transceiver.addReceiveSsrc(ssrc);
+        getConference().addEndpointSsrc(this, ssrc);
     }
 
     /**
@@ -1365,6 +1423,8 @@ public void addChannel(ChannelShim channelShim)
             }
             channelShims.add(channelShim);
         }
+
+        getConference().receiversChanged();
     }
 
     /**
@@ -1391,6 +1451,8 @@ public void removeChannel(ChannelShim channelShim)
                 expire();
             }
         }
+
+        getConference().receiversChanged();
     }
 
     /**
@@ -1401,6 +1463,15 @@ public Transceiver getTransceiver()
         return transceiver;
     }
 
+    /**
+     * Gets the IDs of the endpoints whose video this endpoint would receive
+     * if there was enough bandwidth.
+     */
+    public Set<String> getWantedEndpointIds()
+    {
+        return bitrateController.getWantedEndpointIds();
+    }
+
     /**
      * {@inheritDoc}
      */
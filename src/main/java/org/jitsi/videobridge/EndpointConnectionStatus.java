@@ -20,6 +20,7 @@
 import org.jitsi.osgi.*;
 import org.jitsi.service.configuration.*;
 import org.jitsi.videobridge.shim.*;
+import org.jitsi.videobridge.util.*;
 import org.osgi.framework.*;
 
 import java.util.*;
@@ -43,6 +44,12 @@
  * out to be temporary and the traffic is restored another message is sent with
  * "active" set to "true".
  *
+ * Rather than checking every endpoint on every probe, each endpoint is kept in
+ * a {@link TimerWheel} with the time at which it could first be considered
+ * inactive (e.g. its last activity plus {@link #maxInactivityLimit}), and
+ * only the endpoints which are due are checked. Endpoints which are inactive
+ * are checked on every probe, so that we notice when they reconnect.
+ *
  * The module is started by OSGi as configured in
  * {@link org.jitsi.videobridge.osgi.JvbBundleConfig}
  *
@@ -116,6 +123,13 @@
      */
     private List<Endpoint> inactiveEndpoints = new LinkedList<>();
 
+    /**
+     * The endpoints being monitored, by the time at which they should be
+     * checked next.
+     */
+    private final TimerWheel<Endpoint> endpointChecks
+        = new TimerWheel<>(PROBE_INTERVAL, System.currentTimeMillis());
+
     /**
      * The timer which runs the periodical connection status probing operation.
      */
@@ -126,7 +140,10 @@
      */
     public EndpointConnectionStatus()
     {
-        super(new String[] { EventFactory.MSG_TRANSPORT_READY_TOPIC});
+        super(new String[] {
+            EventFactory.MSG_TRANSPORT_READY_TOPIC,
+            EventFactory.ENDPOINT_CREATED_TOPIC,
+            EventFactory.ENDPOINT_EXPIRED_TOPIC });
     }
 
     /**
@@ -193,46 +210,45 @@ public void stop(BundleContext bundleContext)
         }
 
         inactiveEndpoints.clear();
+        endpointChecks.clear();
 
         this.bundleContext = null;
     }
 
     /**
      * Periodic task which is executed in {@link #PROBE_INTERVAL} intervals.
-     * Monitors endpoints connectivity status.
+     * Monitors the connectivity status of the endpoints which are due for a
+     * check.
      */
     private void doMonitor()
     {
         BundleContext bundleContext = this.bundleContext;
         if (bundleContext != null)
         {
-            Videobridge videobridge
-                = ServiceUtils2.getService(bundleContext, Videobridge.class);
             cleanupExpiredEndpointsStatus();
 
-            Conference[] conferences = videobridge.getConferences();
-            Arrays.stream(conferences)
-                .forEachOrdered(
-                    conference ->
-                        conference.getEndpoints()
-                            .forEach(this::monitorEndpointActivity));
+            for (Endpoint endpoint
+                    : endpointChecks.advance(System.currentTimeMillis()))
+            {
+                Conference conference = endpoint.getConference();
+                if (!endpoint.isExpired()
+                    && conference != null && !conference.isExpired())
+                {
+                    endpointChecks.schedule(
+                        endpoint, monitorEndpointActivity(endpoint));
+                }
+            }
         }
     }
 
     /**
      * Checks the activity for a specific {@link Endpoint}.
-     * @param abstractEndpoint the endpoint.
+     * @param endpoint the endpoint.
+     * @return the time (in milliseconds) at which the endpoint should be
+     * checked next.
      */
-    private void monitorEndpointActivity(AbstractEndpoint abstractEndpoint)
+    private long monitorEndpointActivity(Endpoint endpoint)
     {
-        if (!(abstractEndpoint instanceof Endpoint))
-        {
-            // We only care about endpoints/participants connected to this
-            // bridge, which are of type Endpoint.
-            return;
-        }
-
-        Endpoint endpoint = (Endpoint) abstractEndpoint;
         String endpointId = endpoint.getID();
 
         long mostRecentChannelCreated = endpoint.channelShims.stream()
@@ -266,7 +282,7 @@ private void monitorEndpointActivity(AbstractEndpoint abstractEndpoint)
                 if (logger.isDebugEnabled())
                     logger.debug(
                             endpointId + " not ready for activity checks yet");
-                return;
+                return mostRecentChannelCreated + firstTransferTimeout + 1;
             }
         }
 
@@ -295,6 +311,12 @@ else if (!inactive && inactiveEndpoints.contains(endpoint))
                     "No activity on %s for %s",
                     endpointId, (( (double) noActivityForMs) / 1000d )));
         }
+
+        // An inactive endpoint may reconnect at any time, while an active one
+        // can not become inactive before its inactivity limit.
+        return inactive
+            ? System.currentTimeMillis() + PROBE_INTERVAL
+            : lastActivity + maxInactivityLimit + 1;
     }
 
     /**
@@ -378,7 +400,29 @@ public void handleEvent(Event event)
         // Verify the topic just in case
         // FIXME eventually add this verification to the base class
         String topic = event.getTopic();
-        if (!EventFactory.MSG_TRANSPORT_READY_TOPIC.equals(topic))
+        if (EventFactory.ENDPOINT_CREATED_TOPIC.equals(topic))
+        {
+            Object source = event.getProperty(EventFactory.EVENT_SOURCE);
+            if (source instanceof Endpoint)
+            {
+                // We only care about endpoints/participants connected to this
+                // bridge, which are of type Endpoint. The first check decides
+                // when the next one is due.
+                endpointChecks.schedule(
+                    (Endpoint) source, System.currentTimeMillis());
+            }
+            return;
+        }
+        else if (EventFactory.ENDPOINT_EXPIRED_TOPIC.equals(topic))
+        {
+            Object source = event.getProperty(EventFactory.EVENT_SOURCE);
+            if (source instanceof Endpoint)
+            {
+                endpointChecks.remove((Endpoint) source);
+            }
+            return;
+        }
+        else if (!EventFactory.MSG_TRANSPORT_READY_TOPIC.equals(topic))
         {
             logger.warn("Received event for unexpected topic: " + topic);
             return;
@@ -63,6 +63,13 @@
     public static final String COLIBRI_CLASS_LASTN_ENDPOINTS_CHANGED
         = "LastNEndpointsChangeEvent";
 
+    /**
+     * The {@link Videobridge#COLIBRI_CLASS} value indicating an
+     * {@code OctoVideoInterest} message, sent between bridges over Octo.
+     */
+    public static final String COLIBRI_CLASS_OCTO_VIDEO_INTEREST
+        = "OctoVideoInterest";
+
     /**
      * The {@link Videobridge#COLIBRI_CLASS} value indicating a
      * {@code PinnedEndpointChangedEvent}.
@@ -184,6 +191,29 @@ public static String createLastNEndpointsChangeEvent(
         return msg.toString();
     }
 
+    /**
+     * Creates an {@link #COLIBRI_CLASS_OCTO_VIDEO_INTEREST} message, which
+     * advertises to remote bridges the endpoints whose video the local
+     * endpoints of a bridge want to receive.
+     *
+     * @param relayId the ID of the Octo relay of the bridge sending the
+     * message.
+     * @param endpointIds the IDs of the wanted endpoints.
+     * @return a JSON string serialization of the created message
+     */
+    public static String createOctoVideoInterestMessage(
+            String relayId,
+            Collection<String> endpointIds)
+    {
+        JSONObject videoInterest = new JSONObject();
+        videoInterest.put("colibriClass", COLIBRI_CLASS_OCTO_VIDEO_INTEREST);
+        videoInterest.put("relayId", relayId);
+        JSONArray endpoints = new JSONArray();
+        endpoints.addAll(endpointIds);
+        videoInterest.put("endpoints", endpoints);
+        return videoInterest.toJSONString();
+    }
+
     /**
      * Create a {@link EndpointMessageBuilder#COLIBRI_CLASS_SELECTED_UPDATE}
      * colibri message
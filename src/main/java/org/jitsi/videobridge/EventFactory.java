@@ -48,6 +48,12 @@
     public static final String ENDPOINT_CREATED_TOPIC
         = "org/jitsi/videobridge/Endpoint/CREATED";
 
+    /**
+     * The name of the topic of a "endpoint expired" event.
+     */
+    public static final String ENDPOINT_EXPIRED_TOPIC
+        = "org/jitsi/videobridge/Endpoint/EXPIRED";
+
     /**
      * The name of the topic of a "message transport ready" event triggered on
      * an endpoint instance when it's message transport connection is ready for
@@ -111,6 +117,18 @@ public static Event endpointCreated(AbstractEndpoint endpoint)
         return new Event(ENDPOINT_CREATED_TOPIC, makeProperties(endpoint));
     }
 
+    /**
+     * Creates a new "endpoint expired" <tt>Event</tt>, which indicates that
+     * a COLIBRI endpoint expired.
+     * @param endpoint the expired endpoint.
+     *
+     * @return the <tt>Event</tt> which was created.
+     */
+    public static Event endpointExpired(AbstractEndpoint endpoint)
+    {
+        return new Event(ENDPOINT_EXPIRED_TOPIC, makeProperties(endpoint));
+    }
+
     /**
      * Creates a new "message transport ready" <tt>Event</tt>, which means that
      * the endpoint passed in {@link #EVENT_SOURCE} property has now it's
@@ -17,7 +17,6 @@
 package org.jitsi.videobridge;
 
 import java.util.*;
-import java.util.stream.*;
 
 /**
  * This class is somewhat a placeholder for now--I'm not sure if this is how
@@ -33,8 +32,15 @@
     private final String myEndpointId;
 
     // Right now both 'null' and '-1' values will 'disable' lastN
-    private Integer lastNValue = -1;
-    private List<String> endpointsSortedByActivity;
+    private volatile Integer lastNValue = -1;
+
+    /**
+     * Maps the ID of each endpoint (other than ours) to its rank in the list
+     * of endpoints sorted by activity, so that {@link #wants(String)} is a
+     * single lookup. It is replaced as a whole when the order changes.
+     */
+    private volatile Map<String, Integer> ranksByEndpointId
+        = Collections.emptyMap();
 
     /**
      * Initializes a new {@link LastNFilter} instance.
@@ -66,10 +72,17 @@ public Integer getLastNValue()
     public void setEndpointsSortedByActivity(
             List<String> endpointsSortedByActivity)
     {
-        this.endpointsSortedByActivity = endpointsSortedByActivity
-                .stream()
-                .filter(epId -> !epId.equals(myEndpointId))
-                .collect(Collectors.toList());
+        Map<String, Integer> ranksByEndpointId
+            = new HashMap<>(endpointsSortedByActivity.size() * 2);
+        int rank = 0;
+        for (String endpointId : endpointsSortedByActivity)
+        {
+            if (!endpointId.equals(myEndpointId))
+            {
+                ranksByEndpointId.putIfAbsent(endpointId, rank++);
+            }
+        }
+        this.ranksByEndpointId = ranksByEndpointId;
     }
 
     /**
@@ -79,8 +92,14 @@ public void setEndpointsSortedByActivity(
      */
     public boolean wants(String packetSourceEndpointId)
     {
-        return (lastNValue == null ||
-                lastNValue < 0 ||
-                (endpointsSortedByActivity.indexOf(packetSourceEndpointId) < lastNValue));
+        Integer lastNValue = this.lastNValue;
+        if (lastNValue == null || lastNValue < 0)
+        {
+            return true;
+        }
+
+        // Endpoints which are not (yet) in the list are accepted.
+        Integer rank = ranksByEndpointId.get(packetSourceEndpointId);
+        return rank == null || rank < lastNValue;
     }
 }
@@ -33,4 +33,17 @@
      * @param packet the RTP/RTCP packet
      */
     void send(PacketInfo packet);
+
+    /**
+     * Sends the given RTP/RTCP 'packet' without taking ownership of its
+     * buffer. The packet may be shared with other handlers, so an
+     * implementation must not modify the packet data or return its buffer to
+     * the pool, and must not keep a reference to it after this method
+     * returns. The default implementation sends a copy of the packet.
+     * @param packet the RTP/RTCP packet
+     */
+    default void sendShared(PacketInfo packet)
+    {
+        send(packet.clone());
+    }
 }
@@ -0,0 +1,246 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge;
+
+import java.util.function.*;
+
+/**
+ * Merges the changes of the dominant speaker and of the ordering of the
+ * endpoints of a conference into updates which are at least a minimum
+ * interval apart, so that a burst of changes (e.g. while the dominant
+ * speaker identification is settling) is propagated to the endpoints of the
+ * conference only once, with the latest state. A change of the dominant
+ * speaker which is reverted before it is propagated is not propagated at
+ * all.
+ *
+ * @param <T> the type of the endpoints.
+ */
+class SpeechActivityUpdateCoalescer<T>
+{
+    /**
+     * The minimum interval (in milliseconds) between two updates.
+     */
+    private final long minIntervalMs;
+
+    /**
+     * Runs the updates.
+     */
+    private final Scheduler scheduler;
+
+    /**
+     * The source of the current time in milliseconds.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Provides the current dominant speaker and propagates the updates.
+     */
+    private final Handler<T> handler;
+
+    /**
+     * Whether a change of the dominant speaker is waiting to be propagated.
+     */
+    private boolean pendingDominantSpeakerChange = false;
+
+    /**
+     * Whether a change of the endpoint ordering is waiting to be propagated.
+     */
+    private boolean pendingEndpointsChange = false;
+
+    /**
+     * Whether an update has been scheduled and has not run yet.
+     */
+    private boolean updateScheduled = false;
+
+    /**
+     * The time (in milliseconds) of the last update, or -1.
+     */
+    private long lastUpdateMs = -1;
+
+    /**
+     * The dominant speaker which was announced by the last update.
+     */
+    private T lastAnnouncedDominantEndpoint;
+
+    /**
+     * The number of updates which were propagated.
+     */
+    private long numUpdates = 0;
+
+    /**
+     * The number of changes which were merged into another update, or which
+     * turned out to be no-ops by the time they were propagated (e.g. the
+     * dominant speaker switched back and forth).
+     */
+    private long numSuppressedUpdates = 0;
+
+    /**
+     * Initializes a new {@link SpeechActivityUpdateCoalescer} instance.
+     *
+     * @param minIntervalMs the minimum interval (in milliseconds) between two
+     * updates.
+     * @param scheduler runs the updates.
+     * @param clock the source of the current time in milliseconds.
+     * @param handler provides the current dominant speaker and propagates the
+     * updates.
+     */
+    SpeechActivityUpdateCoalescer(
+            long minIntervalMs,
+            Scheduler scheduler,
+            LongSupplier clock,
+            Handler<T> handler)
+    {
+        this.minIntervalMs = minIntervalMs;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.handler = handler;
+    }
+
+    /**
+     * Schedules the propagation of a change, merging it with an update which
+     * is already scheduled, and making sure that updates are at least
+     * {@link #minIntervalMs} apart. The state which the change refers to must
+     * already be visible to {@link Handler#getDominantEndpoint()} and to the
+     * code which handles the update.
+     *
+     * @param dominantSpeakerChanged whether the dominant speaker changed.
+     * @param endpointsChanged whether the ordering of the endpoints changed.
+     */
+    synchronized void scheduleUpdate(
+            boolean dominantSpeakerChanged, boolean endpointsChanged)
+    {
+        pendingDominantSpeakerChange |= dominantSpeakerChanged;
+        pendingEndpointsChange |= endpointsChanged;
+
+        if (updateScheduled)
+        {
+            updateSuppressed();
+            return;
+        }
+        updateScheduled = true;
+
+        long delayMs
+            = lastUpdateMs == -1
+                ? 0
+                : lastUpdateMs + minIntervalMs - clock.getAsLong();
+        scheduler.schedule(this::fireUpdate, Math.max(0, delayMs));
+    }
+
+    /**
+     * Propagates the pending changes, i.e. announces the dominant speaker
+     * and/or pushes the current ordering of the endpoints.
+     */
+    void fireUpdate()
+    {
+        boolean dominantSpeakerChanged;
+        boolean endpointsChanged;
+        synchronized (this)
+        {
+            dominantSpeakerChanged = pendingDominantSpeakerChange;
+            endpointsChanged = pendingEndpointsChange;
+            pendingDominantSpeakerChange = false;
+            pendingEndpointsChange = false;
+            updateScheduled = false;
+            lastUpdateMs = clock.getAsLong();
+
+            T dominantEndpoint = handler.getDominantEndpoint();
+            if (dominantSpeakerChanged
+                && dominantEndpoint == lastAnnouncedDominantEndpoint)
+            {
+                // The dominant speaker changed and then changed back before
+                // we got to announce it.
+                dominantSpeakerChanged = false;
+                if (!endpointsChanged)
+                {
+                    updateSuppressed();
+                    return;
+                }
+            }
+            lastAnnouncedDominantEndpoint = dominantEndpoint;
+            numUpdates++;
+        }
+
+        handler.update(dominantSpeakerChanged, endpointsChanged);
+    }
+
+    /**
+     * Counts a change which was not propagated on its own.
+     */
+    private void updateSuppressed()
+    {
+        numSuppressedUpdates++;
+        handler.updateSuppressed();
+    }
+
+    /**
+     * @return the number of updates which were propagated.
+     */
+    synchronized long getNumUpdates()
+    {
+        return numUpdates;
+    }
+
+    /**
+     * @return the number of changes which were not propagated on their own.
+     */
+    synchronized long getNumSuppressedUpdates()
+    {
+        return numSuppressedUpdates;
+    }
+
+    /**
+     * Runs tasks after a delay.
+     */
+    interface Scheduler
+    {
+        /**
+         * Runs a task after a delay.
+         *
+         * @param task the task.
+         * @param delayMs the delay in milliseconds (0 to run the task as soon
+         * as possible).
+         */
+        void schedule(Runnable task, long delayMs);
+    }
+
+    /**
+     * Provides the current dominant speaker and propagates the updates.
+     *
+     * @param <T> the type of the endpoints.
+     */
+    interface Handler<T>
+    {
+        /**
+         * @return the current dominant speaker.
+         */
+        T getDominantEndpoint();
+
+        /**
+         * Propagates an update. Called without any locks held.
+         *
+         * @param dominantSpeakerChanged whether to announce the dominant
+         * speaker.
+         * @param endpointsChanged whether to push the ordering of the
+         * endpoints.
+         */
+        void update(boolean dominantSpeakerChanged, boolean endpointsChanged);
+
+        /**
+         * Called when a change was not propagated on its own.
+         */
+        void updateSuppressed();
+    }
+}
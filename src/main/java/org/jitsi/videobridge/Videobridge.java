@@ -297,6 +297,8 @@ public Conference createConference(
         }
         while (conference == null);
 
+        scheduleExpireCheck(conference);
+
         // The method Videobridge.getConferenceCountString() should better
         // be executed outside synchronized blocks in order to reduce the
         // risks of causing deadlocks.
@@ -309,6 +311,41 @@ public Conference createConference(
         return conference;
     }
 
+    /**
+     * Notifies this instance that a specific {@link Conference} may be ready
+     * to expire earlier than previously expected (e.g. it was just created,
+     * or its last endpoint left).
+     *
+     * @param conference the conference.
+     */
+    void scheduleExpireCheck(Conference conference)
+    {
+        videobridgeExpireThread.scheduleCheck(conference);
+    }
+
+    /**
+     * Notifies this instance that a specific {@link AbstractEndpoint} may be
+     * ready to expire earlier than previously expected (e.g. it was just
+     * created, or ICE failed).
+     *
+     * @param endpoint the endpoint.
+     */
+    void scheduleExpireCheck(AbstractEndpoint endpoint)
+    {
+        videobridgeExpireThread.scheduleCheck(endpoint);
+    }
+
+    /**
+     * Notifies this instance that a specific {@link AbstractEndpoint} has
+     * expired, and no longer needs to be checked for expiration.
+     *
+     * @param endpoint the endpoint.
+     */
+    void cancelExpireCheck(AbstractEndpoint endpoint)
+    {
+        videobridgeExpireThread.cancelCheck(endpoint);
+    }
+
     /**
      * Enables graceful shutdown mode on this bridge instance and eventually
      * starts the shutdown immediately if no conferences are currently being
@@ -348,7 +385,10 @@ public void expireConference(Conference conference)
                 expireConference = false;
         }
         if (expireConference)
+        {
+            videobridgeExpireThread.cancelCheck(conference);
             conference.expire();
+        }
 
         // Check if it's the time to shutdown now
         maybeDoShutdown();
@@ -1195,6 +1235,7 @@ public JSONObject getQueueStats()
                 "rtp_sender_queue",
                 getJsonFromQueueErrorHandler(
                         RtpSenderImpl.Companion.getQueueErrorCounter()));
+        queueStats.put("task_pools", TaskPools.getStatsJson());
 
         return queueStats;
     }
@@ -1349,5 +1390,13 @@ public Version getVersion()
          * The total number of endpoints created.
          */
         public AtomicInteger totalEndpoints = new AtomicInteger();
+
+        /**
+         * The total number of dominant speaker and endpoint ordering changes
+         * which were merged into another update (or dropped as no-ops)
+         * instead of being propagated to the endpoints on their own.
+         */
+        public AtomicLong totalSuppressedSpeechActivityUpdates
+            = new AtomicLong();
     }
 }
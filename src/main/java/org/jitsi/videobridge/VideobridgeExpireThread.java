@@ -22,12 +22,23 @@
 import org.jitsi.service.configuration.*;
 import org.jitsi.utils.concurrent.*;
 import org.jitsi.utils.logging.*;
+import org.jitsi.videobridge.util.*;
 import org.osgi.framework.*;
 
 /**
  * Implements a <tt>Thread</tt> which expires the {@link AbstractEndpoint}s and
  * {@link Conference}s of a specific <tt>Videobridge</tt>.
  *
+ * Instead of checking every conference and endpoint periodically, each one is
+ * kept in a {@link TimerWheel} with the earliest time at which it may need to
+ * be expired (e.g. when an endpoint's inactivity would exceed its expire
+ * time), and only those which are due are checked. Those which turn out not to
+ * be ready (e.g. because there has been activity) are rescheduled. Conditions
+ * which don't depend on time (e.g. ICE failing, or the last endpoint of a
+ * conference leaving) trigger a check through
+ * {@link #scheduleCheck(AbstractEndpoint)} and
+ * {@link #scheduleCheck(Conference)}.
+ *
  * @author Lyubomir Marinov
  */
 public class VideobridgeExpireThread
@@ -56,8 +67,8 @@
             true, VideobridgeExpireThread.class.getSimpleName() + "-channel");
 
     /**
-     * The name of the property which specifies the interval in seconds at which
-     * a {@link VideobridgeExpireThread} instance should run.
+     * The name of the property which specifies the maximum interval in seconds
+     * between two checks of the same conference or endpoint.
      */
     public static final String EXPIRE_CHECK_SLEEP_SEC
             = "org.jitsi.videobridge.EXPIRE_CHECK_SLEEP_SEC";
@@ -74,6 +85,12 @@
     private static final int EXPIRE_CHECK_SLEEP_SEC_DEFAULT =
             DEFAULT_EXPIRE;
 
+    /**
+     * The interval in milliseconds at which the conferences and endpoints
+     * which are due are checked, i.e. the precision of the checks.
+     */
+    private static final long TICK_MS = 1000;
+
     /**
      * The {@link PeriodicRunnable} registered with {@link #EXECUTOR} which is
      * to run the expire task for this {@link VideobridgeExpireThread} instance.
@@ -86,6 +103,27 @@
      */
     private Videobridge videobridge;
 
+    /**
+     * The maximum interval in milliseconds between two checks of the same
+     * conference or endpoint.
+     */
+    private volatile long maxCheckIntervalMs
+        = EXPIRE_CHECK_SLEEP_SEC_DEFAULT * 1000L;
+
+    /**
+     * The conferences of {@link #videobridge}, by the time at which they
+     * should be checked next.
+     */
+    private final TimerWheel<Conference> conferenceChecks
+        = new TimerWheel<>(TICK_MS, System.currentTimeMillis());
+
+    /**
+     * The endpoints of {@link #videobridge}, by the time at which they should
+     * be checked next.
+     */
+    private final TimerWheel<AbstractEndpoint> endpointChecks
+        = new TimerWheel<>(TICK_MS, System.currentTimeMillis());
+
     /**
      * Initializes a new {@link VideobridgeExpireThread} instance which is to
      * expire the {@link Conference}s of a specific {@link Videobridge}.
@@ -118,8 +156,9 @@ void start(final BundleContext bundleContext)
                         EXPIRE_CHECK_SLEEP_SEC, EXPIRE_CHECK_SLEEP_SEC_DEFAULT);
         logger.info(
             "Starting with " + expireCheckSleepSec + " second interval.");
+        maxCheckIntervalMs = expireCheckSleepSec * 1000L;
 
-        expireRunnable = new PeriodicRunnable(expireCheckSleepSec * 1000)
+        expireRunnable = new PeriodicRunnable(TICK_MS)
         {
             @Override
             public void run()
@@ -155,23 +194,100 @@ void stop(final BundleContext bundleContext)
         }
         expireRunnable = null;
         videobridge = null;
+        conferenceChecks.clear();
+        endpointChecks.clear();
+    }
+
+    /**
+     * Schedules the next check of whether a specific {@link Conference}
+     * should expire, at the earliest time at which it may, or after the
+     * maximum interval. Keeps an earlier check, if one is scheduled.
+     *
+     * @param conference the conference.
+     */
+    void scheduleCheck(Conference conference)
+    {
+        if (!conference.isExpired())
+        {
+            conferenceChecks.schedule(
+                conference,
+                getNextCheckTimeMs(conference.getEarliestExpireTimeMs()));
+        }
+    }
+
+    /**
+     * Schedules the next check of whether a specific {@link AbstractEndpoint}
+     * should expire, at the earliest time at which it may, or after the
+     * maximum interval. Keeps an earlier check, if one is scheduled.
+     *
+     * @param endpoint the endpoint.
+     */
+    void scheduleCheck(AbstractEndpoint endpoint)
+    {
+        if (!endpoint.isExpired())
+        {
+            endpointChecks.schedule(
+                endpoint,
+                getNextCheckTimeMs(endpoint.getEarliestExpireTimeMs()));
+        }
     }
 
     /**
-     * Expires the {@link Conference}s and/or {@link Endpoint}s of a specific <tt>Videobridge</tt> if they
-     * have been inactive for more than their advertised <tt>expire</tt> number
-     * of seconds.
+     * Stops checking whether a specific {@link Conference} should expire
+     * (e.g. because it has expired).
+     *
+     * @param conference the conference.
+     */
+    void cancelCheck(Conference conference)
+    {
+        conferenceChecks.remove(conference);
+    }
+
+    /**
+     * Stops checking whether a specific {@link AbstractEndpoint} should expire
+     * (e.g. because it has expired).
+     *
+     * @param endpoint the endpoint.
+     */
+    void cancelCheck(AbstractEndpoint endpoint)
+    {
+        endpointChecks.remove(endpoint);
+    }
+
+    /**
+     * Gets the time of the next check of an object, given the earliest time
+     * at which it may expire.
+     *
+     * @param earliestExpireTimeMs the earliest time at which the object may
+     * expire, or -1 if it is not known.
+     * @return the time in milliseconds.
+     */
+    private long getNextCheckTimeMs(long earliestExpireTimeMs)
+    {
+        long maxTimeMs = System.currentTimeMillis() + maxCheckIntervalMs;
+        return earliestExpireTimeMs < 0
+            ? maxTimeMs : Math.min(earliestExpireTimeMs, maxTimeMs);
+    }
+
+    /**
+     * Expires the {@link Conference}s and/or {@link Endpoint}s of a specific
+     * <tt>Videobridge</tt> which are due for a check and turn out to be ready
+     * to expire (e.g. they have been inactive for more than their advertised
+     * <tt>expire</tt> number of seconds), and reschedules the others.
      *
      * @param videobridge the <tt>Videobridge</tt> which is to have its
-     * <tt>Channel</tt>s expired if they have been inactive for more than their
-     * advertised <tt>expire</tt> number of seconds
+     * conferences and endpoints expired.
      */
     private void expire(Videobridge videobridge)
     {
-        logger.info("Running expire()");
-        for (Conference conference : videobridge.getConferences())
+        long nowMs = System.currentTimeMillis();
+        for (Conference conference : conferenceChecks.advance(nowMs))
         {
-            // The Conferences will live an iteration more than the Contents.
+            if (conference.isExpired())
+            {
+                continue;
+            }
+
             if (conference.shouldExpire())
             {
                 logger.info("Conference "
@@ -181,14 +297,28 @@ private void expire(Videobridge videobridge)
             }
             else
             {
-                for (AbstractEndpoint endpoint : conference.getEndpoints())
-                {
-                    if (endpoint.shouldExpire())
-                    {
-                        logger.info("Expiring endpoint " + endpoint.getID());
-                        EXPIRE_EXECUTOR.execute(endpoint::expire);
-                    }
-                }
+                scheduleCheck(conference);
+            }
+        }
+
+        for (AbstractEndpoint endpoint : endpointChecks.advance(nowMs))
+        {
+            Conference conference = endpoint.getConference();
+            if (endpoint.isExpired()
+                || conference == null || conference.isExpired())
+            {
+                // Expiring the conference expires its endpoints.
+                continue;
+            }
+
+            if (endpoint.shouldExpire())
+            {
+                logger.info("Expiring endpoint " + endpoint.getID());
+                EXPIRE_EXECUTOR.execute(endpoint::expire);
+            }
+            else
+            {
+                scheduleCheck(endpoint);
             }
         }
     }
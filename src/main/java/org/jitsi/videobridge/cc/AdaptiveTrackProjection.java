@@ -96,23 +96,25 @@
      * the context final (=> create it during construction) because we need a
      * payload type (could be VP9, could be H264, could be VP8) so it has to be
      * created on packet arrival.
+     *
+     * The context is published together with the payload type that was used
+     * to determine its type, so that the packet path reads both consistently
+     * without locking. It is only replaced while holding the lock of this
+     * instance.
      */
-    private AdaptiveTrackProjectionContext context;
-
-    /**
-     * The payload type that was used to determine the {@link #context} type.
-     */
-    private int contextPayloadType = -1;
+    private volatile ContextHolder contextHolder;
 
     /**
      * The ideal quality index for this track projection.
      */
-    private int idealIndex = RTPEncodingDesc.SUSPENDED_INDEX;
+    private volatile int idealIndex = RTPEncodingDesc.SUSPENDED_INDEX;
 
     /**
-     * The target quality index for this track projection.
+     * The target quality index for this track projection. It is published by
+     * the {@link BitrateController} and read for every packet, without
+     * locking.
      */
-    private int targetIndex = RTPEncodingDesc.SUSPENDED_INDEX;
+    private volatile int targetIndex = RTPEncodingDesc.SUSPENDED_INDEX;
 
     //TODO(brian): we need this to know which frameprojectioncontext to make
     // based on the payload type of a packet.  is there a better way?
@@ -247,13 +249,48 @@ public boolean accept(@NotNull VideoRtpPacket videoRtpPacket)
     /**
      * Gets or creates the adaptive track projection context that corresponds to
      * the payload type of the RTP packet that is specified as a parameter. If
-     * the payload type is different from {@link #contextPayloadType}, then a
+     * the payload type is different from that of the current context, then a
      * new adaptive track projection context is created that is appropriate for
      * the new payload type.
      *
-     * Note that, at the time of this writing, there's no practical need for a
-     * synchronized keyword because there's only one thread (the translator
-     * thread) accessing this method at a time.
+     * The common case (the current context matches the packet) is handled
+     * without locking.
+     *
+     * @param rtpPacket the RTP packet of the adaptive track projection context
+     * to get or create.
+     * @return the adaptive track projection context that corresponds to
+     * the payload type of the RTP packet that is specified as a parameter.
+     */
+    private AdaptiveTrackProjectionContext getContext(
+        @NotNull VideoRtpPacket rtpPacket)
+    {
+        ContextHolder holder = contextHolder;
+        if (holder != null && holder.payloadType == rtpPacket.getPayloadType())
+        {
+            AdaptiveTrackProjectionContext contextCopy = holder.context;
+            if (!(contextCopy.getPayloadType() instanceof Vp8PayloadType))
+            {
+                return contextCopy;
+            }
+
+            boolean hasTemporalLayerIndex
+                = DePacketizer.VP8PayloadDescriptor.getTemporalLayerIndex(
+                    rtpPacket.getBuffer(),
+                    rtpPacket.getPayloadOffset(),
+                    rtpPacket.getPayloadLength()) > -1;
+            if (hasTemporalLayerIndex
+                == contextCopy instanceof VP8AdaptiveTrackProjectionContext)
+            {
+                return contextCopy;
+            }
+        }
+
+        return getOrCreateContext(rtpPacket);
+    }
+
+    /**
+     * Implements the slow path of {@link #getContext(VideoRtpPacket)}, which
+     * may need to create a new context.
      *
      * @param rtpPacket the RTP packet of the adaptive track projection context
      * to get or create.
@@ -261,11 +298,16 @@ public boolean accept(@NotNull VideoRtpPacket videoRtpPacket)
      * the payload type of the RTP packet that is specified as a parameter.
      */
     private synchronized
-    AdaptiveTrackProjectionContext getContext(@NotNull VideoRtpPacket rtpPacket)
+    AdaptiveTrackProjectionContext getOrCreateContext(
+        @NotNull VideoRtpPacket rtpPacket)
     {
+        ContextHolder holder = contextHolder;
+        AdaptiveTrackProjectionContext context
+            = holder == null ? null : holder.context;
+
         PayloadType payloadTypeObject;
         int payloadType = rtpPacket.getPayloadType();
-        if (context == null || contextPayloadType != payloadType)
+        if (context == null || holder.payloadType != payloadType)
         {
             logger.debug(hashCode() + " TEMP: adaptive track projection " + hashCode() +
                     " creating context for payload type " + payloadType);
@@ -305,23 +347,29 @@ AdaptiveTrackProjectionContext getContext(@NotNull VideoRtpPacket rtpPacket)
                 // context switch
                 context = new VP8AdaptiveTrackProjectionContext(
                     diagnosticContext, payloadTypeObject, getRtpState());
-                contextPayloadType = payloadType;
             }
             else if (!hasTemporalLayerIndex
                 && !(context instanceof GenericAdaptiveTrackProjectionContext))
             {
                 // context switch
                 context = new GenericAdaptiveTrackProjectionContext(payloadTypeObject, getRtpState());
-                contextPayloadType = payloadType;
             }
 
-            // no context switch
+            // Even without a context switch the payload type may have changed
+            // (e.g. between two VP8 payload types), and it must be recorded
+            // for the next packets to take the fast path.
+            if (holder == null
+                || holder.context != context
+                || holder.payloadType != payloadType)
+            {
+                contextHolder = new ContextHolder(context, payloadType);
+            }
             return context;
         }
-        else if (context == null || contextPayloadType != payloadType)
+        else if (context == null || holder.payloadType != payloadType)
         {
             context = new GenericAdaptiveTrackProjectionContext(payloadTypeObject, getRtpState());
-            contextPayloadType = payloadType;
+            contextHolder = new ContextHolder(context, payloadType);
             return context;
         }
         else
@@ -335,7 +383,8 @@ else if (context == null || contextPayloadType != payloadType)
      */
     private RtpState getRtpState()
     {
-        if (context == null)
+        ContextHolder holder = contextHolder;
+        if (holder == null)
         {
             MediaStreamTrackDesc track = getSource();
             long ssrc = track.getRTPEncodings()[0].getPrimarySSRC();
@@ -348,7 +397,7 @@ private RtpState getRtpState()
         }
         else
         {
-            return context.getRtpState();
+            return holder.context.getRtpState();
         }
     }
 
@@ -363,13 +412,13 @@ private RtpState getRtpState()
     VideoRtpPacket[] rewriteRtp(@NotNull VideoRtpPacket rtpPacket)
         throws RewriteException
     {
-        AdaptiveTrackProjectionContext contextCopy = context;
-        if (contextCopy == null)
+        ContextHolder holder = contextHolder;
+        if (holder == null)
         {
             return EMPTY_PACKET_ARR;
         }
 
-        return contextCopy.rewriteRtp(rtpPacket, packetCache);
+        return holder.context.rewriteRtp(rtpPacket, packetCache);
     }
 
     /**
@@ -380,13 +429,13 @@ VideoRtpPacket[] rewriteRtp(@NotNull VideoRtpPacket rtpPacket)
      */
     public boolean rewriteRtcp(@NotNull RtcpSrPacket rtcpSrPacket)
     {
-        AdaptiveTrackProjectionContext contextCopy = context;
-        if (contextCopy == null)
+        ContextHolder holder = contextHolder;
+        if (holder == null)
         {
             return true;
         }
 
-        return contextCopy.rewriteRtcp(rtcpSrPacket);
+        return holder.context.rewriteRtcp(rtcpSrPacket);
     }
 
     /**
@@ -431,14 +480,44 @@ public JSONObject getDebugState()
         }
 
         debugState.put("targetSsrc", targetSsrc);
+        ContextHolder holder = contextHolder;
         debugState.put(
                 "context",
-                context == null ? null : context.getDebugState());
-        debugState.put("contextPayloadType", contextPayloadType);
+                holder == null ? null : holder.context.getDebugState());
+        debugState.put(
+                "contextPayloadType", holder == null ? -1 : holder.payloadType);
         debugState.put("idealIndex", idealIndex);
         debugState.put("targetIndex", targetIndex);
         debugState.put("packetCache", packetCache.getNodeStats().toJson());
 
         return debugState;
     }
+
+    /**
+     * An adaptive track projection context together with the payload type
+     * that was used to determine its type.
+     */
+    private static class ContextHolder
+    {
+        /**
+         * The context.
+         */
+        private final AdaptiveTrackProjectionContext context;
+
+        /**
+         * The payload type that was used to determine the type of
+         * {@link #context}.
+         */
+        private final int payloadType;
+
+        /**
+         * Initializes a new {@link ContextHolder} instance.
+         */
+        private ContextHolder(
+            AdaptiveTrackProjectionContext context, int payloadType)
+        {
+            this.context = context;
+            this.payloadType = payloadType;
+        }
+    }
 }
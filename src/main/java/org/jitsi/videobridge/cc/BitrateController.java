@@ -25,6 +25,7 @@
 import org.jitsi.utils.*;
 import org.jitsi.utils.logging.*;
 import org.jitsi.videobridge.*;
+import org.jitsi.videobridge.util.*;
 import org.jitsi_modified.impl.neomedia.rtp.*;
 import org.json.simple.*;
 
@@ -176,6 +177,13 @@
         = cfg != null ? cfg.getInt(BWE_CHANGE_THRESHOLD_PCT_PNAME,
         BWE_CHANGE_THRESHOLD_PCT_DEFAULT) : BWE_CHANGE_THRESHOLD_PCT_DEFAULT;
 
+    /**
+     * The maximum age in milliseconds of an allocation after which a change
+     * in the bandwidth estimation always triggers a new one (see
+     * {@link #canChangeAllocation(long, long)}).
+     */
+    private static final long MAX_ALLOCATION_AGE_MS = 5000;
+
     /**
      * The max resolution to allocate for the thumbnails.
      */
@@ -231,8 +239,8 @@
      * The {@link AdaptiveTrackProjection}s that this instance is managing, keyed
      * by the SSRCs of the associated {@link MediaStreamTrackDesc}.
      */
-    private final Map<Long, AdaptiveTrackProjection>
-        adaptiveTrackProjectionMap = new ConcurrentHashMap<>();
+    private final ConcurrentLongObjectMap<AdaptiveTrackProjection>
+        adaptiveTrackProjectionMap = new ConcurrentLongObjectMap<>();
 
     /**
      * The {@link List} of endpoints that are currently being forwarded,
@@ -241,6 +249,16 @@
      */
     private Set<String> forwardedEndpointIds = INITIAL_EMPTY_SET;
 
+    /**
+     * The IDs of the endpoints whose video the endpoint that owns this
+     * instance would receive if there was enough bandwidth, i.e. the endpoints
+     * which fit in its LastN and have at least one encoding it accepts. Unlike
+     * {@link #forwardedEndpointIds} this does not depend on the bandwidth
+     * estimation or on the bitrates of the streams, so it is safe to use it
+     * to decide which streams to request from remote (Octo) bridges.
+     */
+    private volatile Set<String> wantedEndpointIds = INITIAL_EMPTY_SET;
+
     /**
      * A boolean that indicates whether or not we should trust the bandwidth
      * estimations. If this is se to false, then we assume a bandwidth
@@ -272,6 +290,35 @@
      */
     private long lastBwe = -1;
 
+    /**
+     * The available bandwidth (in bps) that was used for the last allocation,
+     * or -1 if no allocation was computed yet.
+     */
+    private long lastAllocationBweBps = -1;
+
+    /**
+     * The time (in milliseconds) at which the last allocation was computed,
+     * or -1.
+     */
+    private long lastAllocationMs = -1;
+
+    /**
+     * The total bitrate (in bps) of the ideal layers of the tracks right after
+     * the last allocation.
+     */
+    private long lastAllocationIdealBps = -1;
+
+    /**
+     * The number of times the allocation was computed.
+     */
+    private long numAllocations = 0;
+
+    /**
+     * The number of bandwidth estimation changes which were ignored because
+     * they could not change the allocation.
+     */
+    private long numSkippedBweChanges = 0;
+
     /**
      * The list of endpoints ids ordered by activity.
      */
@@ -465,21 +512,22 @@ public JSONObject getDebugState()
     {
         JSONObject debugState = new JSONObject();
         debugState.put("forwardedEndpoints", forwardedEndpointIds.toString());
+        debugState.put("wantedEndpoints", wantedEndpointIds.toString());
         debugState.put("trustBwe", trustBwe);
         debugState.put("lastBwe", lastBwe);
+        debugState.put("numAllocations", numAllocations);
+        debugState.put("numSkippedBweChanges", numSkippedBweChanges);
         debugState.put("maxRxFrameHeightPx", maxRxFrameHeightPx);
         debugState.put("selectedEndpointIds", selectedEndpointIds.toString());
         debugState.put("pinnedEndpointIds", pinnedEndpointIds.toString());
         debugState.put("lastN", lastN);
         debugState.put("supportsRtx", supportsRtx);
         JSONObject adaptiveTrackProjectionsJson = new JSONObject();
-        for (Map.Entry<Long, AdaptiveTrackProjection> entry
-                : adaptiveTrackProjectionMap.entrySet())
-        {
-            adaptiveTrackProjectionsJson.put(
-                    entry.getKey(),
-                    entry.getValue().getDebugState());
-        }
+        adaptiveTrackProjectionMap.forEach(
+            (ssrc, adaptiveTrackProjection) ->
+                adaptiveTrackProjectionsJson.put(
+                    ssrc,
+                    adaptiveTrackProjection.getDebugState()));
         debugState.put(
                 "adaptiveTrackProjectionMap",
                 adaptiveTrackProjectionsJson);
@@ -634,8 +682,140 @@ public void bandwidthChanged(long newBandwidthBps)
             }
 
             lastBwe = newBandwidthBps;
-            update();
+            updateIfAllocationCanChange();
+        }
+    }
+
+    /**
+     * Updates the allocation after a change in the bandwidth estimation,
+     * unless the new estimation can not change the result of the last
+     * allocation.
+     */
+    private synchronized void updateIfAllocationCanChange()
+    {
+        long nowMs = System.currentTimeMillis();
+        long bweBps = getAvailableBandwidth(nowMs);
+        if (!canChangeAllocation(bweBps, nowMs))
+        {
+            numSkippedBweChanges++;
+            if (logger.isDebugEnabled())
+            {
+                logger.debug(destinationEndpoint.getID()
+                    + " available bandwidth (" + bweBps + ") can not change"
+                    + " the allocation, ignoring");
+            }
+            return;
+        }
+
+        update();
+    }
+
+    /**
+     * Checks whether the allocation computed with a specific available
+     * bandwidth could be different from the last allocation, assuming that
+     * nothing else changed. The allocation is greedy, so it can only change
+     * if the bandwidth increases and some track is below its ideal, or if the
+     * bandwidth decreases below the bitrate of the current allocation.
+     *
+     * Changes in the layers which the senders send (e.g. a higher simulcast
+     * layer starting or stopping) can also change the allocation, so it is
+     * also recomputed if the bitrate of the ideal layers changed since the
+     * last allocation, or if the last allocation is older than
+     * {@link #MAX_ALLOCATION_AGE_MS}.
+     *
+     * @param bweBps the available bandwidth in bps.
+     * @param nowMs the current time in milliseconds.
+     * @return {@code false} if the allocation would certainly not change,
+     * and {@code true} otherwise.
+     */
+    private boolean canChangeAllocation(long bweBps, long nowMs)
+    {
+        if (lastAllocationBweBps < 0
+            || nowMs - lastAllocationMs >= MAX_ALLOCATION_AGE_MS)
+        {
+            return true;
+        }
+
+        if (isSignificantChange(
+                lastAllocationIdealBps, getTotalIdealBps(nowMs)))
+        {
+            return true;
+        }
+
+        List<AdaptiveTrackProjection> adaptiveTrackProjections
+            = this.adaptiveTrackProjections;
+        if (bweBps > lastAllocationBweBps)
+        {
+            for (AdaptiveTrackProjection adaptiveTrackProjection
+                    : adaptiveTrackProjections)
+            {
+                if (adaptiveTrackProjection.getTargetIndex()
+                        < adaptiveTrackProjection.getIdealIndex())
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        else if (bweBps < lastAllocationBweBps)
+        {
+            // Use the current bitrates, the streams may have changed since
+            // the last allocation.
+            long totalTargetBps = 0;
+            for (AdaptiveTrackProjection adaptiveTrackProjection
+                    : adaptiveTrackProjections)
+            {
+                MediaStreamTrackDesc sourceTrack
+                    = adaptiveTrackProjection.getSource();
+                int targetIdx = adaptiveTrackProjection.getTargetIndex();
+                // A negative index means that the track is suspended.
+                if (sourceTrack != null && targetIdx >= 0)
+                {
+                    totalTargetBps
+                        += sourceTrack.getBitrateBps(nowMs, targetIdx);
+                }
+            }
+            return bweBps < totalTargetBps;
         }
+
+        return false;
+    }
+
+    /**
+     * Gets the total bitrate (in bps) of the ideal layers of the tracks that
+     * this instance currently projects.
+     *
+     * @param nowMs the current time in milliseconds.
+     */
+    private long getTotalIdealBps(long nowMs)
+    {
+        long totalIdealBps = 0;
+        for (AdaptiveTrackProjection adaptiveTrackProjection
+                : adaptiveTrackProjections)
+        {
+            MediaStreamTrackDesc sourceTrack
+                = adaptiveTrackProjection.getSource();
+            int idealIdx = adaptiveTrackProjection.getIdealIndex();
+            if (sourceTrack != null && idealIdx >= 0)
+            {
+                totalIdealBps += sourceTrack.getBitrateBps(nowMs, idealIdx);
+            }
+        }
+        return totalIdealBps;
+    }
+
+    /**
+     * Checks whether a bitrate changed by more than
+     * {@link #BWE_CHANGE_THRESHOLD_PCT} percent (in either direction).
+     *
+     * @param previousBps the previous bitrate in bps.
+     * @param currentBps the current bitrate in bps.
+     */
+    private static boolean isSignificantChange(
+        long previousBps, long currentBps)
+    {
+        return Math.abs(currentBps - previousBps)
+            > previousBps * BWE_CHANGE_THRESHOLD_PCT / 100;
     }
 
     /**
@@ -703,6 +883,8 @@ private synchronized void update()
         // Compute the bitrate allocation.
         TrackBitrateAllocation[]
             trackBitrateAllocations = allocate(bweBps, sortedEndpoints);
+        lastAllocationBweBps = bweBps;
+        numAllocations++;
 
         // Update the the controllers based on the allocation and send a
         // notification to the client the set of forwarded endpoints has
@@ -710,6 +892,7 @@ private synchronized void update()
         Set<String> oldForwardedEndpointIds = forwardedEndpointIds;
 
         Set<String> newForwardedEndpointIds = new HashSet<>();
+        Set<String> newWantedEndpointIds = new HashSet<>();
         Set<String> endpointsEnteringLastNIds = new HashSet<>();
         Set<String> conferenceEndpointIds = new HashSet<>();
 
@@ -725,6 +908,11 @@ private synchronized void update()
                 trackBitrateAllocation : trackBitrateAllocations)
             {
                 conferenceEndpointIds.add(trackBitrateAllocation.endpointID);
+                if (trackBitrateAllocation.fitsInLastN
+                    && trackBitrateAllocation.ratedIndices.length > 0)
+                {
+                    newWantedEndpointIds.add(trackBitrateAllocation.endpointID);
+                }
 
                 int trackTargetIdx = trackBitrateAllocation.getTargetIndex(),
                     trackIdealIdx = trackBitrateAllocation.getIdealIndex();
@@ -815,6 +1003,8 @@ private synchronized void update()
         // The BandwidthProber will pick this up.
         this.adaptiveTrackProjections
             = Collections.unmodifiableList(adaptiveTrackProjections);
+        lastAllocationMs = nowMs;
+        lastAllocationIdealBps = getTotalIdealBps(nowMs);
 
         if (!newForwardedEndpointIds.equals(oldForwardedEndpointIds))
         {
@@ -827,6 +1017,23 @@ private synchronized void update()
         }
 
         this.forwardedEndpointIds = newForwardedEndpointIds;
+
+        if (!newWantedEndpointIds.equals(wantedEndpointIds))
+        {
+            wantedEndpointIds = Collections.unmodifiableSet(newWantedEndpointIds);
+            destinationEndpoint.getConference().endpointVideoInterestChanged();
+        }
+    }
+
+    /**
+     * Gets the IDs of the endpoints whose video the endpoint that owns this
+     * instance would receive if there was enough bandwidth.
+     *
+     * @return the (unmodifiable) set of endpoint IDs.
+     */
+    public Set<String> getWantedEndpointIds()
+    {
+        return wantedEndpointIds;
     }
 
     /**
@@ -1243,7 +1450,7 @@ public VideoRtpPacket[] transformRtp(@NotNull PacketInfo packetInfo)
             firstMediaMs = System.currentTimeMillis();
         }
 
-        Long ssrc = videoPacket.getSsrc();
+        long ssrc = videoPacket.getSsrc();
         AdaptiveTrackProjection adaptiveTrackProjection
                 = adaptiveTrackProjectionMap.get(ssrc);
 
@@ -1433,6 +1640,11 @@ private TrackBitrateAllocation(
             }
 
             long nowMs = System.currentTimeMillis();
+            // The bitrates are shared with the other receivers in the
+            // conference.
+            long[] encodingBitrates
+                = destinationEndpoint.getConference()
+                    .getTrackBitrateSnapshots().getBitrates(track, nowMs);
             List<RateSnapshot> ratesList = new ArrayList<>();
             // Initialize the list of flows that we will consider for sending
             // for this track. For example, for the on-stage participant we
@@ -1441,8 +1653,9 @@ private TrackBitrateAllocation(
             // 180p@15fps and 180p@7.5fps
             int ratedPreferredIdx = 0;
             long idealBps = 0;
-            for (RTPEncodingDesc encoding : encodings)
+            for (int i = 0; i < encodings.length; i++)
             {
+                RTPEncodingDesc encoding = encodings[i];
                 if (maxFrameHeight >= 0 && encoding.getHeight() > maxFrameHeight)
                 {
                     continue;
@@ -1456,7 +1669,7 @@ private TrackBitrateAllocation(
                     if (encoding.getHeight() < ONSTAGE_PREFERRED_HEIGHT
                         || encoding.getFrameRate() >= ONSTAGE_PREFERRED_FRAME_RATE)
                     {
-                        long encodingBitrateBps = encoding.getBitrateBps(nowMs);
+                        long encodingBitrateBps = encodingBitrates[i];
                         if (encodingBitrateBps > 0)
                         {
                             idealBps = encodingBitrateBps;
@@ -1474,7 +1687,7 @@ else if (encoding.getHeight() <= THUMBNAIL_MAX_HEIGHT)
                 {
                     // For the thumbnails, we consider all temporal layers of
                     // the low resolution stream.
-                    long encodingBitrateBps = encoding.getBitrateBps(nowMs);
+                    long encodingBitrateBps = encodingBitrates[i];
                     if (encodingBitrateBps > 0)
                     {
                         idealBps = encodingBitrateBps;
@@ -0,0 +1,151 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.cc;
+
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
+import org.jitsi_modified.impl.neomedia.rtp.*;
+import org.json.simple.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Keeps recent snapshots of the bitrates of the encodings of the tracks in a
+ * conference, so that the {@link BitrateController}s of all receivers in the
+ * conference can share them instead of each one reading the rate statistics
+ * of every encoding on every allocation.
+ */
+public class TrackBitrateSnapshots
+{
+    /**
+     * The name of the property which controls the maximum age (in
+     * milliseconds) of a snapshot before it is recomputed. A value of 0
+     * disables sharing.
+     */
+    public static final String MAX_AGE_MS_PNAME
+        = "org.jitsi.videobridge.BITRATE_SNAPSHOT_MAX_AGE_MS";
+
+    /**
+     * The default value for {@link #MAX_AGE_MS_PNAME}.
+     */
+    private static final long MAX_AGE_MS_DEFAULT = 200;
+
+    /**
+     * The maximum age (in milliseconds) of a snapshot.
+     */
+    private static final long MAX_AGE_MS;
+
+    static
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+        MAX_AGE_MS
+            = cfg != null
+                ? cfg.getLong(MAX_AGE_MS_PNAME, MAX_AGE_MS_DEFAULT)
+                : MAX_AGE_MS_DEFAULT;
+    }
+
+    /**
+     * The snapshots for each track. The keys are weak so that the tracks of
+     * endpoints which leave are eventually dropped.
+     */
+    private final Map<MediaStreamTrackDesc, Snapshot> snapshots
+        = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * The number of snapshots which were computed.
+     */
+    private final AtomicLong numComputed = new AtomicLong();
+
+    /**
+     * The number of times an existing snapshot was used.
+     */
+    private final AtomicLong numShared = new AtomicLong();
+
+    /**
+     * Gets the bitrates of the encodings of a specific track, as they were at
+     * most {@link #MAX_AGE_MS} milliseconds ago.
+     *
+     * @param track the track.
+     * @param nowMs the current time in milliseconds.
+     * @return an array with the bitrate (in bps) of each encoding in
+     * {@link MediaStreamTrackDesc#getRTPEncodings()}, at the same index. It
+     * must not be modified.
+     */
+    long[] getBitrates(MediaStreamTrackDesc track, long nowMs)
+    {
+        RTPEncodingDesc[] encodings = track.getRTPEncodings();
+        Snapshot snapshot = snapshots.get(track);
+        if (snapshot != null
+            && nowMs - snapshot.timeMs < MAX_AGE_MS
+            && snapshot.bitrates.length == encodings.length)
+        {
+            numShared.incrementAndGet();
+            return snapshot.bitrates;
+        }
+
+        long[] bitrates = new long[encodings.length];
+        for (int i = 0; i < encodings.length; i++)
+        {
+            bitrates[i] = encodings[i].getBitrateBps(nowMs);
+        }
+
+        // Concurrent computations for the same track are harmless, the last
+        // one wins.
+        snapshots.put(track, new Snapshot(nowMs, bitrates));
+        numComputed.incrementAndGet();
+        return bitrates;
+    }
+
+    /**
+     * Gets a JSON representation of the parts of this object's state that
+     * are deemed useful for debugging.
+     */
+    public JSONObject getDebugState()
+    {
+        JSONObject debugState = new JSONObject();
+        debugState.put("maxAgeMs", MAX_AGE_MS);
+        debugState.put("numTracks", snapshots.size());
+        debugState.put("numComputed", numComputed.get());
+        debugState.put("numShared", numShared.get());
+        return debugState;
+    }
+
+    /**
+     * The bitrates of the encodings of a track at a specific time.
+     */
+    private static class Snapshot
+    {
+        /**
+         * The time (in milliseconds) at which the bitrates were read.
+         */
+        private final long timeMs;
+
+        /**
+         * The bitrates (in bps) of the encodings of the track.
+         */
+        private final long[] bitrates;
+
+        /**
+         * Initializes a new {@link Snapshot} instance.
+         */
+        private Snapshot(long timeMs, long[] bitrates)
+        {
+            this.timeMs = timeMs;
+            this.bitrates = bitrates;
+        }
+    }
+}
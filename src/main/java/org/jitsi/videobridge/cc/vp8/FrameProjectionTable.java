@@ -0,0 +1,272 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.cc.vp8;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A table of recently projected frames, keyed by the SSRC and RTP timestamp
+ * of the frame. Lookups are lock-free and don't allocate. Insertions must be
+ * synchronized by the caller.
+ *
+ * The frames are kept in a preallocated open-addressing table. A new frame
+ * only replaces a frame which is no longer needed (as determined by an
+ * {@link ExpiryPredicate}), so that a frame which may still have packets
+ * retransmitted is never evicted by another frame whose timestamp happens to
+ * map to the same slot. Frames which don't fit in the table (which only
+ * happens when more frames than expected are in flight) are kept in an
+ * overflow map, which is not consulted when it is empty.
+ *
+ * @param <T> the type of the frame projections.
+ */
+class FrameProjectionTable<T>
+{
+    /**
+     * The maximum number of slots to probe, starting from the slot of the
+     * key.
+     */
+    static final int MAX_PROBES = 8;
+
+    /**
+     * The slots.
+     */
+    private final AtomicReferenceArray<Entry<T>> slots;
+
+    /**
+     * The mask to apply to a hash to get a slot.
+     */
+    private final int mask;
+
+    /**
+     * Decides whether a frame projection is no longer needed.
+     */
+    private final ExpiryPredicate<T> expiryPredicate;
+
+    /**
+     * The frames which didn't fit in {@link #slots}.
+     */
+    private final Map<Long, T> overflow = new ConcurrentHashMap<>();
+
+    /**
+     * The number of entries in {@link #overflow}, so that lookups can skip
+     * it without calling into the map.
+     */
+    private volatile int overflowSize = 0;
+
+    /**
+     * The number of frames which were put in {@link #overflow}.
+     */
+    private long numOverflows = 0;
+
+    /**
+     * Initializes a new {@link FrameProjectionTable} instance.
+     *
+     * @param size the number of slots, which must be a power of two.
+     * @param expiryPredicate decides whether a frame projection is no longer
+     * needed.
+     */
+    FrameProjectionTable(int size, ExpiryPredicate<T> expiryPredicate)
+    {
+        if (size <= 0 || (size & (size - 1)) != 0)
+        {
+            throw new IllegalArgumentException("size=" + size);
+        }
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+        this.expiryPredicate = expiryPredicate;
+    }
+
+    /**
+     * Combines the SSRC and the RTP timestamp of a frame into a key.
+     */
+    private static long getKey(long ssrc, long timestamp)
+    {
+        return (ssrc & 0xffff_ffffL) << 32 | (timestamp & 0xffff_ffffL);
+    }
+
+    /**
+     * Gets the slot at which to start probing for a frame.
+     */
+    int getHomeSlot(long ssrc, long timestamp)
+    {
+        // Consecutive frames usually differ by a multiple of a large power of
+        // two (e.g. 3000), so we need to mix the bits.
+        return (int) ((getKey(ssrc, timestamp) * 0x9E3779B97F4A7C15L) >>> 40)
+            & mask;
+    }
+
+    /**
+     * Gets the projection of a specific frame, if it is still needed.
+     *
+     * @param ssrc the SSRC of the frame.
+     * @param timestamp the RTP timestamp of the frame.
+     * @param nowMs the current time in milliseconds.
+     * @return the projection, or {@code null}.
+     */
+    T get(long ssrc, long timestamp, long nowMs)
+    {
+        long key = getKey(ssrc, timestamp);
+        int home = getHomeSlot(ssrc, timestamp);
+        for (int i = 0; i < MAX_PROBES; i++)
+        {
+            Entry<T> entry = slots.get((home + i) & mask);
+            if (entry == null)
+            {
+                // Slots are never emptied, so the key is not further along.
+                break;
+            }
+            if (entry.key == key)
+            {
+                return expiryPredicate.isExpired(entry.value, nowMs)
+                    ? null : entry.value;
+            }
+        }
+
+        if (overflowSize > 0)
+        {
+            T value = overflow.get(key);
+            if (value != null && !expiryPredicate.isExpired(value, nowMs))
+            {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds (or replaces) the projection of a specific frame. Must not be
+     * called concurrently with itself.
+     *
+     * @param ssrc the SSRC of the frame.
+     * @param timestamp the RTP timestamp of the frame.
+     * @param value the projection.
+     * @param nowMs the current time in milliseconds.
+     */
+    void put(long ssrc, long timestamp, T value, long nowMs)
+    {
+        long key = getKey(ssrc, timestamp);
+        int home = getHomeSlot(ssrc, timestamp);
+        int freeSlot = -1;
+        for (int i = 0; i < MAX_PROBES; i++)
+        {
+            int slot = (home + i) & mask;
+            Entry<T> entry = slots.get(slot);
+            if (entry != null && entry.key == key)
+            {
+                freeSlot = slot;
+                break;
+            }
+            if (freeSlot == -1
+                && (entry == null
+                    || expiryPredicate.isExpired(entry.value, nowMs)))
+            {
+                freeSlot = slot;
+            }
+            if (entry == null)
+            {
+                break;
+            }
+        }
+
+        if (overflowSize > 0)
+        {
+            // Drop an older projection of the same frame, and the frames
+            // which are no longer needed.
+            overflow.remove(key);
+            overflow.values().removeIf(
+                v -> expiryPredicate.isExpired(v, nowMs));
+        }
+
+        if (freeSlot != -1)
+        {
+            slots.set(freeSlot, new Entry<>(key, value));
+        }
+        else
+        {
+            overflow.put(key, value);
+            numOverflows++;
+        }
+        overflowSize = overflow.size();
+    }
+
+    /**
+     * @return the number of frame projections in this table (including the
+     * ones which are no longer needed but have not been replaced).
+     */
+    int size()
+    {
+        int size = overflowSize;
+        for (int i = 0; i < slots.length(); i++)
+        {
+            if (slots.get(i) != null)
+            {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of frames which didn't fit in the table.
+     */
+    long getNumOverflows()
+    {
+        return numOverflows;
+    }
+
+    /**
+     * Decides whether a frame projection is no longer needed, i.e. whether it
+     * can be replaced by another one.
+     *
+     * @param <T> the type of the frame projections.
+     */
+    interface ExpiryPredicate<T>
+    {
+        /**
+         * @param value the frame projection.
+         * @param nowMs the current time in milliseconds.
+         * @return {@code true} if {@code value} is no longer needed.
+         */
+        boolean isExpired(T value, long nowMs);
+    }
+
+    /**
+     * An immutable slot of the table.
+     */
+    private static class Entry<T>
+    {
+        /**
+         * The key of the frame (see {@link #getKey(long, long)}).
+         */
+        private final long key;
+
+        /**
+         * The projection.
+         */
+        private final T value;
+
+        /**
+         * Initializes a new {@link Entry} instance.
+         */
+        private Entry(long key, T value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
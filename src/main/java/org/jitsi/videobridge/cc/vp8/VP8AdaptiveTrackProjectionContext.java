@@ -24,13 +24,11 @@
 import org.jitsi.rtp.rtcp.*;
 import org.jitsi.rtp.util.*;
 import org.jitsi.util.*;
-import org.jitsi.utils.LRUCache;
 import org.jitsi.utils.logging.*;
 import org.jitsi.videobridge.cc.*;
 import org.json.simple.*;
 
 import java.util.*;
-import java.util.concurrent.*;
 
 /**
  * This class represents a projection of a VP8 RTP stream in the RFC 7667 sense
@@ -44,34 +42,59 @@
 {
     private static final Logger logger
             = Logger.getLogger(VP8AdaptiveTrackProjectionContext.class);
+
     /**
-     * A map of partially transmitted {@link VP8FrameProjection}s, i.e.
-     * projections of VP8 frames for which we haven't transmitted all their
-     * packets.
-     *
-     * Fully transmitted and skipped frames are removed from the map for
-     * housekeeping purposes, i.e. to prevent the map from growing too big.
+     * The number of slots in {@link #vp8FrameProjections}. Must be a power of
+     * two. Projections are kept for up to 5 seconds, so this fits the frames
+     * of a 30fps stream with room to spare.
+     */
+    private static final int FRAME_PROJECTIONS_SIZE = 256;
+
+    /**
+     * The number of slots in the table of maximum sequence numbers of frames
+     * which are not (yet) projected. Must be a power of two.
+     */
+    private static final int MAX_SEQUENCE_NUMBERS_SIZE = 16;
+
+    /**
+     * The recently accepted {@link VP8FrameProjection}s, i.e. projections of
+     * VP8 frames for which we may not have transmitted all their packets, in
+     * a preallocated table indexed by the SSRC and RTP timestamp of the
+     * frame. A new projection only replaces one which is fully projected, so
+     * no housekeeping is needed, and a lookup doesn't allocate.
      *
-     * The purpose of this map is to enable forwarding and translation of
+     * The purpose of this table is to enable forwarding and translation of
      * recovered packets of partially transmitted frames and partially
      * transmitted frames _only_.
      *
      * Recovered packets of fully transmitted frames (this can happen for
      * example when the sending endpoint probes for bandwidth with duplicate
      * packets over the RTX stream) are dropped as they're not needed anymore.
-     *
-     * TODO fine tune the ConcurrentHashMap instance to improve performance.
      */
-    private final Map<Long, VP8FrameProjection>
-        vp8FrameProjectionMap = new ConcurrentHashMap<>();
+    private final FrameProjectionTable<VP8FrameProjection> vp8FrameProjections
+        = new FrameProjectionTable<>(
+            FRAME_PROJECTIONS_SIZE, VP8FrameProjection::isFullyProjected);
+
+    /**
+     * The SSRCs of the frames in the table of maximum sequence numbers of
+     * frames which are not (yet) accepted/projected. The table is indexed by
+     * the SSRC and timestamp of the frame, and is only accessed with the lock
+     * on this instance held.
+     */
+    private final long[] maxSequenceNumberSsrcs
+        = new long[MAX_SEQUENCE_NUMBERS_SIZE];
 
     /**
-     * A map that stores the maximum sequence number of frames that are not
-     * (yet) accepted/projected. The map goes from ssrc -> timestamp -> highest
-     * sequence number.
+     * The timestamps of the frames in the table of maximum sequence numbers.
      */
-    private final Map<Long, LRUCache<Long, Integer>>
-        ssrcToFrameToMaxSequenceNumberMap = new HashMap<>();
+    private final long[] maxSequenceNumberTimestamps
+        = new long[MAX_SEQUENCE_NUMBERS_SIZE];
+
+    /**
+     * The highest sequence numbers seen for the frames in the table of
+     * maximum sequence numbers, or -1 for empty slots.
+     */
+    private final int[] maxSequenceNumbers = new int[MAX_SEQUENCE_NUMBERS_SIZE];
 
     /**
      * The {@link VP8QualityFilter} instance that does quality filtering on the
@@ -123,6 +146,17 @@ public VP8AdaptiveTrackProjectionContext(
 
         lastVP8FrameProjection = new VP8FrameProjection(diagnosticContext,
             rtpState.ssrc, startingSequenceNumber, timestamp);
+
+        Arrays.fill(maxSequenceNumbers, -1);
+    }
+
+    /**
+     * Gets the slot in the table of maximum sequence numbers for a frame.
+     */
+    private static int getMaxSequenceNumberSlot(long ssrc, long timestamp)
+    {
+        return (int) (((ssrc ^ timestamp) * 0x9E3779B97F4A7C15L) >>> 40)
+            & (MAX_SEQUENCE_NUMBERS_SIZE - 1);
     }
 
     /**
@@ -136,10 +170,10 @@ public VP8AdaptiveTrackProjectionContext(
     lookupVP8FrameProjection(@NotNull VideoRtpPacket rtpPacket)
     {
         // Lookup for an existing VP8 frame doesn't need to be synced because
-        // we're using a ConcurrentHashMap. At the time of this writing, two
-        // threads reach this point: the translator thread when it decides
-        // whether to accept or drop a packet and the transformer thread when it
-        // needs to rewrite a packet.
+        // the table supports lock-free lookups. At the time of this writing,
+        // two threads reach this point: the translator thread when it decides
+        // whether to accept or drop a packet and the transformer thread when
+        // it needs to rewrite a packet.
 
         VP8FrameProjection
             lastVP8FrameProjectionCopy = lastVP8FrameProjection;
@@ -159,7 +193,10 @@ public VP8AdaptiveTrackProjectionContext(
         // accepted; the inverse does not necessarily hold).
 
         VP8FrameProjection cachedVP8FrameProjection
-            = vp8FrameProjectionMap.get(rtpPacket.getTimestamp());
+            = vp8FrameProjections.get(
+                rtpPacket.getSsrc(),
+                rtpPacket.getTimestamp(),
+                System.currentTimeMillis());
 
         if (cachedVP8FrameProjection != null)
         {
@@ -256,14 +293,14 @@ VP8FrameProjection createVP8FrameProjection(
         // We have successfully projected the incoming frame and we've allocated
         // a starting sequence number for it. Any previous frames can no longer
         // grow.
-        vp8FrameProjectionMap.put(rtpPacket.getTimestamp(), nextVP8FrameProjection);
+        vp8FrameProjections.put(
+            rtpPacket.getSsrc(),
+            rtpPacket.getTimestamp(),
+            nextVP8FrameProjection,
+            nowMs);
         // The frame attached to the "last" projection is no longer the "last".
         lastVP8FrameProjection = nextVP8FrameProjection;
 
-        // Cleanup the frame projection map.
-        vp8FrameProjectionMap.entrySet().removeIf(
-            e -> e.getValue().isFullyProjected(nowMs));
-
         return nextVP8FrameProjection;
     }
 
@@ -279,16 +316,15 @@ VP8FrameProjection createVP8FrameProjection(
      */
     private int getMaxSequenceNumberOfFrame(long ssrc, long timestamp)
     {
-        Map<Long, Integer> frameToMaxSequenceNumberMap
-            = ssrcToFrameToMaxSequenceNumberMap.get(ssrc);
-
-        if (frameToMaxSequenceNumberMap == null)
+        int slot = getMaxSequenceNumberSlot(ssrc, timestamp);
+        if (maxSequenceNumbers[slot] == -1
+            || maxSequenceNumberSsrcs[slot] != ssrc
+            || maxSequenceNumberTimestamps[slot] != timestamp)
         {
             return -1;
         }
 
-        return frameToMaxSequenceNumberMap
-            .getOrDefault(timestamp, -1);
+        return maxSequenceNumbers[slot];
     }
 
     /**
@@ -306,25 +342,19 @@ private int getMaxSequenceNumberOfFrame(long ssrc, long timestamp)
     private void maybeUpdateMaxSequenceNumberOfFrame(
         long ssrc, long timestamp, int sequenceNumber)
     {
-        Map<Long, Integer> frameToMaxSequenceNumberMap
-            = ssrcToFrameToMaxSequenceNumberMap
-            .computeIfAbsent(ssrc, k -> new LRUCache<>(5));
-
-        if (frameToMaxSequenceNumberMap.containsKey(timestamp))
-        {
-            int previousMaxSequenceNumber
-                = getMaxSequenceNumberOfFrame(ssrc, timestamp);
-
-            if (previousMaxSequenceNumber != -1
-                && RTPUtils.isOlderSequenceNumberThan(
-                    previousMaxSequenceNumber, sequenceNumber))
-            {
-                frameToMaxSequenceNumberMap.put(timestamp, sequenceNumber);
-            }
-        }
-        else
+        int previousMaxSequenceNumber
+            = getMaxSequenceNumberOfFrame(ssrc, timestamp);
+
+        // A frame which isn't in the table replaces whatever is in its slot
+        // (an older frame, which is no longer interesting).
+        if (previousMaxSequenceNumber == -1
+            || RTPUtils.isOlderSequenceNumberThan(
+                previousMaxSequenceNumber, sequenceNumber))
         {
-            frameToMaxSequenceNumberMap.put(timestamp, sequenceNumber);
+            int slot = getMaxSequenceNumberSlot(ssrc, timestamp);
+            maxSequenceNumberSsrcs[slot] = ssrc;
+            maxSequenceNumberTimestamps[slot] = timestamp;
+            maxSequenceNumbers[slot] = sequenceNumber;
         }
     }
 
@@ -501,9 +531,10 @@ public JSONObject getDebugState()
                 "class",
                 VP8AdaptiveTrackProjectionContext.class.getSimpleName());
 
+        debugState.put("vp8FrameProjectionsSize", vp8FrameProjections.size());
         debugState.put(
-                "vp8FrameProjectionMapSize",
-                vp8FrameProjectionMap.size());
+                "vp8FrameProjectionsOverflows",
+                vp8FrameProjections.getNumOverflows());
         debugState.put("vp8QualityFilter", vp8QualityFilter.getDebugState());
         debugState.put("payloadType", payloadType.toString());
 
@@ -50,7 +50,7 @@
 
     /**
      * Holds the arrival time (in millis) of the most recent keyframe group.
-     * Reading/writing of this field is synchronized on this instance.
+     * Only accessed with the lock of the owning context held.
      */
     private long mostRecentKeyframeGroupArrivalTimeMs = -1L;
 
@@ -60,9 +60,9 @@
      *
      * internalSpatialLayerIdTarget != externalSpatialLayerIdTarget.
      *
-     * Reading/writing of this field is synchronized on this instance.
+     * Only accessed with the lock of the owning context held.
      */
-    private boolean needsKeyframe = false;
+    private volatile boolean needsKeyframe = false;
 
     /**
      * The spatial/quality layer id that this instance tries to achieve. Upon
@@ -76,8 +76,8 @@
 
     /**
      * The spatial/quality layer ID that we're currently forwarding. -1
-     * indicates that we're not forwarding anything. Reading/writing of this
-     * field is synchronized on this instance.
+     * indicates that we're not forwarding anything. Only accessed with the
+     * lock of the owning context held.
      */
     private int currentSpatialLayerId = SUSPENDED_LAYER_ID;
 
@@ -95,9 +95,10 @@ boolean needsKeyframe()
      * VP8 frame is required because this is were the spatial and/or temporal
      * layer id are found.
      *
-     * Note that, at the time of this writing, there's no practical need for a
-     * synchronized keyword because there's only one thread accessing this
-     * method at a time.
+     * This method is not synchronized, it must only be called with the lock of
+     * the owning {@link VP8AdaptiveTrackProjectionContext} held (which is
+     * already needed to project the frame), so that accepting a packet only
+     * takes a single lock.
      *
      * @param firstPacketOfFrame the first packet of the VP8 frame.
      * @param incomingIndex the quality index of the incoming RTP packet
@@ -106,7 +107,7 @@ boolean needsKeyframe()
      * @param nowMs the current time (in millis)
      * @return true to accept the VP8 frame, otherwise false.
      */
-    synchronized boolean acceptFrame(
+    boolean acceptFrame(
         @NotNull VideoRtpPacket firstPacketOfFrame,
         int incomingIndex,
         int externalTargetIndex, long nowMs)
@@ -223,7 +224,7 @@ else if (currentSpatialLayerId < externalSpatialLayerIdTarget)
      * @param nowMs the current time (in millis)
      * @return true if we're in layer switching phase, false otherwise.
      */
-    private synchronized boolean isOutOfSwitchingPhase(long nowMs)
+    private boolean isOutOfSwitchingPhase(long nowMs)
     {
         long deltaMs = nowMs - mostRecentKeyframeGroupArrivalTimeMs;
         return deltaMs > MIN_KEY_FRAME_WAIT_MS;
@@ -233,7 +234,7 @@ private synchronized boolean isOutOfSwitchingPhase(long nowMs)
      * @return true if it looks like we can re-scale (see implementation of
      * method for specific details).
      */
-    private synchronized boolean isPossibleToSwitch(int spatialLayerId)
+    private boolean isPossibleToSwitch(int spatialLayerId)
     {
         if (spatialLayerId == -1)
         {
@@ -263,14 +264,12 @@ else if (spatialLayerId < currentSpatialLayerId
      * Determines whether to accept or drop a VP8 keyframe. This method updates
      * the spatial layer id.
      *
-     * Note that, at the time of this writing, there's no practical need for a
-     * synchronized keyword because there's only one thread accessing this
-     * method at a time.
+     * Must only be called with the lock of the owning context held.
      *
      * @param nowMs the current time (in millis)
      * @return true to accept the VP8 keyframe, otherwise false.
      */
-    private synchronized boolean acceptKeyframe(
+    private boolean acceptKeyframe(
         int spatialLayerIdOfKeyframe, long nowMs)
     {
         // This branch writes the {@link #currentSpatialLayerId} and it
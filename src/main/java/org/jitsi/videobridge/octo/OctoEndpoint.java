@@ -144,6 +144,13 @@ public void expire()
      */
     void setReceiveSsrcs(Set<Long> ssrcs)
     {
+        Set<Long> oldSsrcs = receiveSsrcs;
         receiveSsrcs = new HashSet<>(ssrcs);
+
+        Conference conference = getConference();
+        oldSsrcs.stream()
+            .filter(ssrc -> !ssrcs.contains(ssrc))
+            .forEach(ssrc -> conference.removeEndpointSsrc(this, ssrc));
+        ssrcs.forEach(ssrc -> conference.addEndpointSsrc(this, ssrc));
     }
 }
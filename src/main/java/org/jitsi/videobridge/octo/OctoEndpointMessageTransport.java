@@ -19,13 +19,17 @@
 import org.jitsi.videobridge.*;
 import org.json.simple.*;
 
+import java.util.*;
+
 /**
  * Extends {@link AbstractEndpointMessageTransport} for the purposes of Octo.
  *
  * Most {@code on*Event} methods are overriden as no-ops because they don't make
  * sense for Octo and are never used. The single exception is
  * {@link #onClientEndpointMessage(Object, JSONObject)} which is not overriden
- * and the logic in the super class applies.
+ * and the logic in the super class applies. Additionally,
+ * {@link #onOctoVideoInterest(Object, JSONObject)} handles the messages in
+ * which remote bridges advertise the video that they want to receive.
  */
 class OctoEndpointMessageTransport
     extends AbstractEndpointMessageTransport
@@ -168,6 +172,40 @@ protected void onLastNChangedEvent(
         logUnexpectedMessage(jsonObject.toJSONString());
     }
 
+    /**
+     * {@inheritDoc}
+     * </p>
+     * Passes the set of endpoints whose video the remote bridge wants to the
+     * {@link OctoTentacle} of the conference.
+     */
+    @Override
+    protected void onOctoVideoInterest(Object src, JSONObject jsonObject)
+    {
+        Object relayId = jsonObject.get("relayId");
+        Object endpoints = jsonObject.get("endpoints");
+        if (!(relayId instanceof String) || !(endpoints instanceof JSONArray))
+        {
+            logUnexpectedMessage(jsonObject.toJSONString());
+            return;
+        }
+
+        Set<String> endpointIds = new HashSet<>();
+        for (Object endpointId : (JSONArray) endpoints)
+        {
+            if (endpointId instanceof String)
+            {
+                endpointIds.add((String) endpointId);
+            }
+        }
+
+        Conference conference = getConference();
+        if (conference != null && !conference.isExpired())
+        {
+            conference.getTentacle()
+                .setRemoteVideoInterest((String) relayId, endpointIds);
+        }
+    }
+
     /**
      * Logs a warning about an unexpected message received through Octo.
      * @param msg the received message.
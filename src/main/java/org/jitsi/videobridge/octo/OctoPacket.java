@@ -36,6 +36,11 @@
  * M: media type (audio, video, or data).
  * <p/>
  * S: Simulcast layer ID.
+ * <p/>
+ * A media type of 3 marks a bundle: a datagram which carries several Octo
+ * packets (each with its own Octo header), each preceded by its length as a
+ * 16-bit unsigned integer. The conference and endpoint ID fields of the
+ * header of a bundle are not used.
  *
  * @author Boris Grozev
  */
@@ -61,6 +66,16 @@
      */
     private static final int OCTO_MEDIA_TYPE_DATA = 2;
 
+    /**
+     * The integer which identifies a bundle of Octo packets.
+     */
+    private static final int OCTO_MEDIA_TYPE_BUNDLE = 3;
+
+    /**
+     * The length of the length field which precedes each packet in a bundle.
+     */
+    static final int BUNDLE_LENGTH_FIELD_LENGTH = 2;
+
     /**
      * @return the integer used to identify the particular {@link MediaType}
      * in Octo.
@@ -113,14 +128,14 @@ static void writeHeaders(
      * @param buf the buffer which contains the Octo header.
      * @param off the offset in {@code buf} at which the Octo header begins.
      * @param len the length of the buffer.
-     * @return the Octo conference ID read from the buffer.
+     * @return the Octo conference ID read from the buffer (its hex
+     * representation is the conference's GID).
      */
-    static String readConferenceId(byte[] buf, int off, int len)
+    static int readConferenceId(byte[] buf, int off, int len)
     {
         assertMinLen(buf, off, len);
 
-        int cid = RTPUtils.readUint24AsInt(buf, off + 1);
-        return Integer.toHexString(cid);
+        return RTPUtils.readUint24AsInt(buf, off + 1);
     }
 
     /**
@@ -148,6 +163,102 @@ static MediaType readMediaType(byte[] buf, int off, int len)
         }
     }
 
+    /**
+     * Checks whether an Octo packet is a bundle of Octo packets.
+     * @param buf the buffer which contains the Octo header.
+     * @param off the offset in {@code buf} at which the Octo header begins.
+     * @param len the length of the buffer.
+     * @return {@code true} if the packet is a bundle.
+     */
+    static boolean isBundle(byte[] buf, int off, int len)
+    {
+        assertMinLen(buf, off, len);
+
+        return (buf[off] & 0x60) >> 5 == OCTO_MEDIA_TYPE_BUNDLE;
+    }
+
+    /**
+     * Writes the Octo header of a bundle to the specified buffer at the
+     * specified offset.
+     * @param buf the buffer to write to.
+     * @param off the offset to write at.
+     */
+    static void writeBundleHeader(byte[] buf, int off)
+    {
+        buf[off] = (byte) (0x80 | (OCTO_MEDIA_TYPE_BUNDLE << 5));
+        RTPUtils.writeUint24(buf, off + 1, 0);
+        RTPUtils.writeInt(buf, off + 4, 0);
+    }
+
+    /**
+     * Writes the length of a packet in a bundle.
+     * @param buf the buffer to write to.
+     * @param off the offset to write at.
+     * @param len the length to write.
+     */
+    static void writeBundledPacketLength(byte[] buf, int off, int len)
+    {
+        buf[off] = (byte) (len >> 8);
+        buf[off + 1] = (byte) len;
+    }
+
+    /**
+     * Reads the length of a packet in a bundle.
+     * @param buf the buffer to read from.
+     * @param off the offset of the length field.
+     * @return the length of the packet which follows the length field.
+     */
+    static int readBundledPacketLength(byte[] buf, int off)
+    {
+        return ((buf[off] & 0xff) << 8) | (buf[off + 1] & 0xff);
+    }
+
+    /**
+     * Reads the packets in a bundle and passes them to a handler. Packets
+     * which are themselves bundles are not passed to the handler (bundles are
+     * never nested), and the rest of the bundle is skipped if a length field
+     * is invalid.
+     * @param buf the buffer which contains the bundle.
+     * @param off the offset in {@code buf} at which the bundle begins.
+     * @param len the length of the bundle.
+     * @param handler the handler for the packets in the bundle.
+     * @return the number of packets which were dropped (a malformed rest of
+     * the bundle counts as one).
+     */
+    static int readBundle(
+            byte[] buf, int off, int len, BundledPacketHandler handler)
+    {
+        int end = off + len;
+        int pos = off + OCTO_HEADER_LENGTH;
+        int numDropped = 0;
+        while (pos + BUNDLE_LENGTH_FIELD_LENGTH <= end)
+        {
+            int packetLen = readBundledPacketLength(buf, pos);
+            pos += BUNDLE_LENGTH_FIELD_LENGTH;
+            if (packetLen < OCTO_HEADER_LENGTH || pos + packetLen > end)
+            {
+                return numDropped + 1;
+            }
+
+            if (isBundle(buf, pos, packetLen))
+            {
+                numDropped++;
+            }
+            else
+            {
+                handler.handleBundledPacket(buf, pos, packetLen);
+            }
+            pos += packetLen;
+        }
+
+        if (pos != end)
+        {
+            // A trailing byte which can't hold a length field.
+            numDropped++;
+        }
+        return numDropped;
+    }
+
     /**
      * Reads the {@code r} flag from an Octo header.
      * @param buf the buffer which contains the Octo header.
@@ -167,14 +278,25 @@ private static boolean readRflag(byte[] buf, int off, int len)
      * @param buf the buffer which contains the Octo header.
      * @param off the offset in {@code buf} at which the Octo header begins.
      * @param len the length of the buffer.
-     * @return the endpoint ID from the given Octo header.
+     * @return the endpoint ID from the given Octo header (its 8-digit hex
+     * representation is the ID of the endpoint).
      */
-    static String readEndpointId(byte[] buf, int off, int len)
+    static int readEndpointId(byte[] buf, int off, int len)
     {
         assertMinLen(buf, off, len);
 
-        long eid = RTPUtils.readUint32AsLong(buf, off + 4);
-        return String.format("%08x", eid);
+        return (int) RTPUtils.readUint32AsLong(buf, off + 4);
+    }
+
+    /**
+     * Converts an endpoint ID read from an Octo header to its string
+     * representation.
+     * @param endpointId the endpoint ID read from an Octo header.
+     * @return the string representation of {@code endpointId}.
+     */
+    static String endpointIdToString(int endpointId)
+    {
+        return String.format("%08x", endpointId & 0xFFFF_FFFFL);
     }
 
     /**
@@ -238,6 +360,140 @@ private static boolean verifyMinLength(
             byte[] buf, int off, int len, int minLen)
     {
         return buf != null && off >= 0 && len >= minLen && minLen >= 0
-            && off + len < buf.length;
+            && off + len <= buf.length;
+    }
+
+    /**
+     * Handles the packets read from a bundle.
+     */
+    interface BundledPacketHandler
+    {
+        /**
+         * Handles an Octo packet from a bundle.
+         * @param buf the buffer which contains the packet.
+         * @param off the offset at which the packet (its Octo header) starts.
+         * @param len the length of the packet.
+         */
+        void handleBundledPacket(byte[] buf, int off, int len);
+    }
+
+    /**
+     * Builds a bundle of Octo packets in a fixed-size buffer.
+     */
+    static class BundleBuilder
+    {
+        /**
+         * The buffer in which the bundle is built.
+         */
+        private final byte[] buf;
+
+        /**
+         * The length of the bundle in {@link #buf} (including its header), or
+         * 0 if it is empty.
+         */
+        private int len = 0;
+
+        /**
+         * The number of packets in the bundle.
+         */
+        private int numPackets = 0;
+
+        /**
+         * Initializes a new {@link BundleBuilder} instance.
+         * @param maxBundleSize the maximum size of a bundle.
+         */
+        BundleBuilder(int maxBundleSize)
+        {
+            buf = new byte[maxBundleSize];
+        }
+
+        /**
+         * Checks whether a packet of a specific length fits in the bundle.
+         * @param packetLen the length of the packet.
+         */
+        boolean fits(int packetLen)
+        {
+            return Math.max(len, OCTO_HEADER_LENGTH)
+                + BUNDLE_LENGTH_FIELD_LENGTH + packetLen <= buf.length;
+        }
+
+        /**
+         * Adds an Octo packet to the bundle.
+         * @param packetBuf the buffer which contains the packet.
+         * @param off the offset at which the packet starts.
+         * @param packetLen the length of the packet.
+         * @throws IllegalArgumentException if the packet does not fit.
+         */
+        void add(byte[] packetBuf, int off, int packetLen)
+        {
+            if (!fits(packetLen))
+            {
+                throw new IllegalArgumentException(
+                    "The packet does not fit in the bundle: " + packetLen);
+            }
+
+            if (len == 0)
+            {
+                writeBundleHeader(buf, 0);
+                len = OCTO_HEADER_LENGTH;
+            }
+
+            writeBundledPacketLength(buf, len, packetLen);
+            len += BUNDLE_LENGTH_FIELD_LENGTH;
+            System.arraycopy(packetBuf, off, buf, len, packetLen);
+            len += packetLen;
+            numPackets++;
+        }
+
+        /**
+         * @return {@code true} if the bundle has no packets.
+         */
+        boolean isEmpty()
+        {
+            return numPackets == 0;
+        }
+
+        /**
+         * @return the number of packets in the bundle.
+         */
+        int getNumPackets()
+        {
+            return numPackets;
+        }
+
+        /**
+         * @return the buffer which contains the data to send.
+         */
+        byte[] getBuffer()
+        {
+            return buf;
+        }
+
+        /**
+         * @return the offset in {@link #getBuffer()} of the data to send. A
+         * bundle with a single packet is sent as a plain Octo packet.
+         */
+        int getOffset()
+        {
+            return numPackets == 1
+                ? OCTO_HEADER_LENGTH + BUNDLE_LENGTH_FIELD_LENGTH : 0;
+        }
+
+        /**
+         * @return the length of the data to send.
+         */
+        int getLength()
+        {
+            return len - getOffset();
+        }
+
+        /**
+         * Removes all packets from the bundle.
+         */
+        void reset()
+        {
+            len = 0;
+            numPackets = 0;
+        }
     }
 }
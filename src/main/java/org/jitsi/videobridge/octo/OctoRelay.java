@@ -56,6 +56,22 @@
      */
     private static final int SO_RCVBUF = 10 * 1024 * 1024;
 
+    /**
+     * The capacity of the queue of each receive worker.
+     */
+    private static final int RECEIVE_WORKER_QUEUE_CAPACITY = 1024;
+
+    /**
+     * The maximum size of a bundle of Octo packets.
+     */
+    private static final int MAX_BUNDLE_SIZE = 1200;
+
+    /**
+     * The maximum size of an Octo packet to add to a bundle (larger packets
+     * are sent directly).
+     */
+    private static final int MAX_BUNDLED_PACKET_SIZE = 400;
+
     /**
      * The socket used to send and receive Octo packets.
      */
@@ -105,6 +121,36 @@
      */
     private AtomicLong packetsDropped = new AtomicLong();
 
+    /**
+     * Number of Octo packets which were sent as part of a bundle.
+     */
+    private AtomicLong packetsBundled = new AtomicLong();
+
+    /**
+     * Number of bundles sent.
+     */
+    private AtomicLong bundlesSent = new AtomicLong();
+
+    /**
+     * The maximum time in milliseconds to delay small packets in order to
+     * bundle them with other packets to the same target, or 0 to disable
+     * bundling.
+     */
+    private volatile int bundleDelayMs = 0;
+
+    /**
+     * Whether conferences should advertise the video their local endpoints
+     * want to remote bridges, and only send video to remote bridges which
+     * want it.
+     */
+    private volatile boolean selectiveForwarding = false;
+
+    /**
+     * The bundlers for each target.
+     */
+    private final Map<SocketAddress, Bundler> bundlers
+        = new ConcurrentHashMap<>();
+
     /**
      * The average send bitrate in the last 1 second.
      */
@@ -115,19 +161,56 @@
      */
     private RateStatistics receiveBitrate = new RateStatistics(1000);
 
+    /**
+     * The {@link DatagramPacket} instances used to send packets. Packets are
+     * sent from many threads, so each thread re-uses its own instance
+     * instead of allocating one per packet.
+     */
+    private final ThreadLocal<DatagramPacket> sendDatagramPackets
+        = ThreadLocal.withInitial(() -> new DatagramPacket(new byte[0], 0));
+
     /**
      * Maps a conference ID (as contained in Octo packets) to a packet handler.
+     * Replaced as a whole (under {@link #handlersSyncRoot}) when handlers are
+     * added or removed, so that lookups on the receive path need no locking
+     * and no boxing.
      */
-    private Map<String, PacketHandler> packetHandlers
-            = new ConcurrentHashMap<>();
+    private volatile HandlerTable packetHandlers = new HandlerTable();
+
+    /**
+     * The lock used when updating {@link #packetHandlers}.
+     */
+    private final Object handlersSyncRoot = new Object();
+
+    /**
+     * Caches the string representations of the endpoint IDs read from Octo
+     * packets.
+     */
+    private final EndpointIdCache endpointIdCache = new EndpointIdCache();
+
+    /**
+     * Handles the packets read from bundles (kept in a field to avoid
+     * allocating a method reference for every bundle).
+     */
+    private final OctoPacket.BundledPacketHandler bundledPacketHandler
+        = this::handleOctoPacket;
+
+    /**
+     * The workers which handle received packets, or an empty array if packets
+     * are handled by the thread which reads from the socket.
+     */
+    private final ReceiveWorker[] receiveWorkers;
 
     /**
      * Initializes a new {@link OctoRelay} instance, binding on a specific
      * address and port.
      * @param address the address on which to bind.
      * @param port the port on which to bind.
+     * @param numReceiveWorkers the number of worker threads to handle received
+     * packets. If 0, packets are handled by the thread which reads from the
+     * socket.
      */
-    OctoRelay(String address, int port)
+    OctoRelay(String address, int port, int numReceiveWorkers)
         throws UnknownHostException, SocketException
     {
         InetSocketAddress addr
@@ -142,6 +225,18 @@
         String id = address + ":" + port;
         setRelayId(id);
 
+        receiveWorkers = new ReceiveWorker[Math.max(0, numReceiveWorkers)];
+        for (int i = 0; i < receiveWorkers.length; i++)
+        {
+            receiveWorkers[i] = new ReceiveWorker();
+            TaskPools.IO_POOL.submit(receiveWorkers[i]);
+        }
+        if (receiveWorkers.length > 0)
+        {
+            logger.info("Using " + receiveWorkers.length
+                    + " Octo receive workers.");
+        }
+
         TaskPools.IO_POOL.submit(this);
     }
 
@@ -158,6 +253,10 @@ void stop()
         {
             logger.warn("Failed to stop OctoRelay: ", e);
         }
+        for (ReceiveWorker worker : receiveWorkers)
+        {
+            worker.stopped = true;
+        }
     }
 
     /**
@@ -186,6 +285,37 @@ void setPublicAddress(String address)
          setRelayId(id);
     }
 
+    /**
+     * Sets the maximum time to delay small packets in order to send them
+     * bundled with other packets to the same target. Note that bundles can
+     * only be received by bridges which support them.
+     * @param bundleDelayMs the delay in milliseconds, or 0 to disable
+     * bundling.
+     */
+    void setBundleDelayMs(int bundleDelayMs)
+    {
+        this.bundleDelayMs = Math.max(0, bundleDelayMs);
+    }
+
+    /**
+     * Enables or disables selective forwarding of video to remote bridges,
+     * based on the video that they advertise as wanted.
+     * @param selectiveForwarding whether to enable selective forwarding.
+     */
+    void setSelectiveForwarding(boolean selectiveForwarding)
+    {
+        this.selectiveForwarding = selectiveForwarding;
+    }
+
+    /**
+     * @return whether selective forwarding of video to remote bridges is
+     * enabled.
+     */
+    boolean isSelectiveForwarding()
+    {
+        return selectiveForwarding;
+    }
+
     @Override
     public void run()
     {
@@ -208,6 +338,12 @@ public void run()
             {
                 logger.warn("Exception while reading: ", ioe);
             }
+            catch (RuntimeException re)
+            {
+                // Don't let a malformed packet stop the reader.
+                logger.warn("Failed to handle an Octo packet: ", re);
+                packetsDropped.incrementAndGet();
+            }
         }
     }
 
@@ -223,25 +359,60 @@ private void handlePacket(byte[] buf, int off, int len)
         packetsReceived.incrementAndGet();
         receiveBitrate.update(len, System.currentTimeMillis());
 
-        String conferenceId = OctoPacket.readConferenceId(buf, off, len);
-        if (conferenceId == null)
+        if (OctoPacket.isBundle(buf, off, len))
         {
-            logger.warn("Invalid Octo packet, can not read conference ID.");
-            packetsDropped.incrementAndGet();
-            return;
+            handleBundle(buf, off, len);
+        }
+        else
+        {
+            handleOctoPacket(buf, off, len);
         }
+    }
 
+    /**
+     * Handles a bundle of Octo packets that was received from the socket.
+     * @param buf the buffer which contains the received data.
+     * @param off the offset where the bundle starts.
+     * @param len the length of the bundle.
+     */
+    private void handleBundle(byte[] buf, int off, int len)
+    {
+        int numDropped
+            = OctoPacket.readBundle(buf, off, len, bundledPacketHandler);
+        if (numDropped > 0)
+        {
+            logger.warn("Invalid Octo bundle, dropped " + numDropped
+                    + " packet(s) from it.");
+            packetsDropped.addAndGet(numDropped);
+        }
+    }
+
+    /**
+     * Handles a single (not bundled) Octo packet.
+     * @param buf the buffer which contains the packet.
+     * @param off the offset where the packet starts.
+     * @param len the length of the packet.
+     */
+    private void handleOctoPacket(byte[] buf, int off, int len)
+    {
+        int conferenceId = OctoPacket.readConferenceId(buf, off, len);
         PacketHandler handler = packetHandlers.get(conferenceId);
         if (handler == null)
         {
             logger.warn("Received an Octo packet for an unknown conference: "
-                    + conferenceId);
+                    + Integer.toHexString(conferenceId));
             packetsDropped.incrementAndGet();
             return;
         }
 
         MediaType mediaType = OctoPacket.readMediaType(buf, off, len);
-        String sourceEndpointId = OctoPacket.readEndpointId(buf, off, len);
+        if (mediaType == null)
+        {
+            logger.warn("Received an Octo packet with an invalid media type.");
+            packetsDropped.incrementAndGet();
+            return;
+        }
+        int sourceEndpointId = OctoPacket.readEndpointId(buf, off, len);
 
         switch (mediaType)
         {
@@ -257,12 +428,16 @@ private void handlePacket(byte[] buf, int off, int len)
                     buf, off + OCTO_HEADER_LENGTH,
                     bufCopy, RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET,
                     rtpLen);
-            handler.handlePacket(
-                new UnparsedPacket(
-                        bufCopy,
-                        RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET,
-                        rtpLen),
-                sourceEndpointId);
+            if (receiveWorkers.length == 0)
+            {
+                deliverPacket(handler, bufCopy, rtpLen, sourceEndpointId);
+            }
+            else
+            {
+                getReceiveWorker(conferenceId).add(
+                    new ReceivedPacket(
+                            handler, bufCopy, rtpLen, sourceEndpointId, null));
+            }
             break;
         case DATA:
             String msg
@@ -277,7 +452,15 @@ private void handlePacket(byte[] buf, int off, int len)
                 logger.debug("Received a message in an Octo data packet: " + msg);
             }
 
-            handler.handleMessage(msg);
+            if (receiveWorkers.length == 0)
+            {
+                handler.handleMessage(msg);
+            }
+            else
+            {
+                getReceiveWorker(conferenceId).add(
+                    new ReceivedPacket(handler, null, 0, 0, msg));
+            }
             break;
         default:
             logger.warn("Wrong media type: " + mediaType);
@@ -285,6 +468,37 @@ private void handlePacket(byte[] buf, int off, int len)
         }
     }
 
+    /**
+     * Gets the receive worker which handles the packets of a specific
+     * conference (all packets of a conference are handled by the same worker,
+     * which preserves their order).
+     * @param conferenceId the Octo conference ID.
+     */
+    private ReceiveWorker getReceiveWorker(int conferenceId)
+    {
+        return receiveWorkers[
+            Math.floorMod(conferenceId, receiveWorkers.length)];
+    }
+
+    /**
+     * Passes a received RTP or RTCP packet to its handler.
+     * @param handler the handler.
+     * @param buf the buffer which contains the packet at offset
+     * {@link RtpPacket#BYTES_TO_LEAVE_AT_START_OF_PACKET}.
+     * @param len the length of the packet.
+     * @param sourceEndpointId the Octo endpoint ID of the source.
+     */
+    private void deliverPacket(
+            PacketHandler handler, byte[] buf, int len, int sourceEndpointId)
+    {
+        handler.handlePacket(
+            new UnparsedPacket(
+                    buf,
+                    RtpPacket.BYTES_TO_LEAVE_AT_START_OF_PACKET,
+                    len),
+            endpointIdCache.get(sourceEndpointId));
+    }
+
      /**
       * Converts a "relay ID" to a socket address. The current implementation
       * assumes that the ID has the form of "address:port".
@@ -318,6 +532,23 @@ void sendPacket(
             Set<SocketAddress> targets,
             String conferenceId,
             String endpointId)
+    {
+        sendPacket(packet, targets, conferenceId, endpointId, true);
+    }
+
+    /**
+     * Sends an RTP packet encapsulated in Octo to the specified targets.
+     *
+     * @param ownsBuffer whether the caller passes the ownership of the
+     * packet's buffer. If {@code false}, the packet data is not modified and
+     * the buffer is not returned to the pool.
+     */
+    void sendPacket(
+            Packet packet,
+            Set<SocketAddress> targets,
+            String conferenceId,
+            String endpointId,
+            boolean ownsBuffer)
     {
         send(
                 packet.getBuffer(),
@@ -326,7 +557,8 @@ void sendPacket(
                 targets,
                 conferenceId,
                 endpointId == null ? "ffffffff" : endpointId,
-                MediaType.VIDEO);
+                MediaType.VIDEO,
+                ownsBuffer);
     }
 
     /**
@@ -365,6 +597,33 @@ void send(
             String conferenceId,
             String endpointId,
             MediaType mediaType)
+    {
+        send(buf, off, len, targets, conferenceId, endpointId, mediaType, true);
+    }
+
+    /**
+     * Sends a specific {@code byte[]} encapsulated in Octo to the
+     * specified list of targets.
+     * @param buf the array which holds the data to send.
+     * @param off the offset at which data starts.
+     * @param len the length of the data to send.
+     * @param targets the list of targets to send to.
+     * @param conferenceId the ID of the conference.
+     * @param endpointId the ID of the source endpoint.
+     * @param mediaType the media type.
+     * @param ownsBuffer whether the ownership of {@code buf} is passed to
+     * this method. If it isn't, the data in {@code [off, off + len)} is not
+     * modified and {@code buf} is not returned to the pool.
+     */
+    private void send(
+            byte[] buf,
+            int off,
+            int len,
+            Set<SocketAddress> targets,
+            String conferenceId,
+            String endpointId,
+            MediaType mediaType,
+            boolean ownsBuffer)
     {
         int octoPacketLength = len + OCTO_HEADER_LENGTH;
         byte[] newBuf;
@@ -382,7 +641,7 @@ void send(
             newOff = off - OCTO_HEADER_LENGTH;
             newBuf = buf;
         }
-        else if (buf.length >= octoPacketLength)
+        else if (ownsBuffer && buf.length >= octoPacketLength)
         {
             System.arraycopy(buf, off, buf, OCTO_HEADER_LENGTH, len);
             newOff = 0;
@@ -402,18 +661,29 @@ else if (buf.length >= octoPacketLength)
                 0 /* simulcast layers info */,
                 conferenceId,
                 endpointId);
-        DatagramPacket datagramPacket
-                = new DatagramPacket(newBuf, newOff, octoPacketLength);
+        DatagramPacket datagramPacket = sendDatagramPackets.get();
+        datagramPacket.setData(newBuf, newOff, octoPacketLength);
+
+        boolean bundle
+            = bundleDelayMs > 0
+                && mediaType != MediaType.DATA
+                && octoPacketLength <= MAX_BUNDLED_PACKET_SIZE;
 
+        int numSent = 0;
         for (SocketAddress target : targets)
         {
+            if (bundle)
+            {
+                bundlers.computeIfAbsent(target, Bundler::new)
+                    .add(newBuf, newOff, octoPacketLength);
+                continue;
+            }
+
             datagramPacket.setSocketAddress(target);
             try
             {
-                bytesSent.addAndGet(octoPacketLength);
-                packetsSent.incrementAndGet();
-                sendBitrate.update(octoPacketLength, System.currentTimeMillis());
                 socket.send(datagramPacket);
+                numSent++;
             }
             catch (IOException ioe)
             {
@@ -421,12 +691,23 @@ else if (buf.length >= octoPacketLength)
             }
         }
 
-        ByteBufferPool.returnBuffer(newBuf);
+        // Update the counters once for all targets.
+        if (numSent > 0)
+        {
+            int numBytes = numSent * octoPacketLength;
+            bytesSent.addAndGet(numBytes);
+            packetsSent.addAndGet(numSent);
+            sendBitrate.update(numBytes, System.currentTimeMillis());
+        }
+
         if (newBuf != buf)
+        {
+            ByteBufferPool.returnBuffer(newBuf);
+        }
+        if (ownsBuffer)
         {
             ByteBufferPool.returnBuffer(buf);
         }
-
     }
 
     /**
@@ -436,14 +717,26 @@ else if (buf.length >= octoPacketLength)
      */
     void addHandler(String conferenceId, PacketHandler handler)
     {
-        synchronized (packetHandlers)
+        int id;
+        try
+        {
+            id = Integer.parseInt(conferenceId, 16);
+        }
+        catch (NumberFormatException nfe)
+        {
+            logger.warn("Invalid conference ID, not adding a handler: "
+                    + conferenceId);
+            return;
+        }
+
+        synchronized (handlersSyncRoot)
         {
-            if (packetHandlers.containsKey(conferenceId))
+            if (packetHandlers.get(id) != null)
             {
                 logger.warn("Replacing an existing packet handler for gid="
                         + conferenceId);
             }
-            packetHandlers.put(conferenceId, handler);
+            packetHandlers = packetHandlers.with(id, handler);
         }
     }
 
@@ -453,16 +746,26 @@ void addHandler(String conferenceId, PacketHandler handler)
      */
     void removeHandler(String conferenceId, PacketHandler handler)
     {
-        synchronized (packetHandlers)
+        int id;
+        try
+        {
+            id = Integer.parseInt(conferenceId, 16);
+        }
+        catch (NumberFormatException nfe)
+        {
+            return;
+        }
+
+        synchronized (handlersSyncRoot)
         {
             // If the Colibri conference for this GID was re-created, and the
             // original Conference object is expired after a new packet handler
             // was registered, the new packet handler should not be removed (as
             // this would break the new conference).
-            PacketHandler existingHandler = packetHandlers.get(conferenceId);
+            PacketHandler existingHandler = packetHandlers.get(id);
             if (handler == existingHandler)
             {
-                packetHandlers.remove(conferenceId);
+                packetHandlers = packetHandlers.with(id, null);
             }
         }
     }
@@ -487,6 +790,392 @@ void removeHandler(String conferenceId, PacketHandler handler)
         void handleMessage(String message);
     }
 
+    /**
+     * Collects small Octo packets for a specific target and sends them as a
+     * bundle, either when the bundle is full or after
+     * {@link #bundleDelayMs}.
+     */
+    private class Bundler
+    {
+        /**
+         * The address to send bundles to.
+         */
+        private final SocketAddress target;
+
+        /**
+         * The bundle being built. Re-used, since bundles are sent
+         * synchronously.
+         */
+        private final OctoPacket.BundleBuilder bundle
+            = new OctoPacket.BundleBuilder(MAX_BUNDLE_SIZE);
+
+        /**
+         * The packet used to send bundles.
+         */
+        private final DatagramPacket datagramPacket;
+
+        /**
+         * Initializes a new {@link Bundler} for a specific target.
+         */
+        private Bundler(SocketAddress target)
+        {
+            this.target = target;
+            datagramPacket = new DatagramPacket(bundle.getBuffer(), 0);
+            datagramPacket.setSocketAddress(target);
+        }
+
+        /**
+         * Adds an Octo packet to the bundle, flushing the bundle first if the
+         * packet doesn't fit.
+         */
+        private synchronized void add(byte[] packetBuf, int off, int packetLen)
+        {
+            if (!bundle.fits(packetLen))
+            {
+                flush();
+            }
+
+            if (bundle.isEmpty())
+            {
+                // A flush scheduled for a previous bundle may send this one
+                // earlier, which is harmless.
+                TaskPools.SCHEDULED_POOL.schedule(
+                    this::flush, bundleDelayMs, TimeUnit.MILLISECONDS);
+            }
+
+            bundle.add(packetBuf, off, packetLen);
+        }
+
+        /**
+         * Sends the bundle (if it isn't empty). A bundle with a single packet
+         * is sent as a plain Octo packet.
+         */
+        private synchronized void flush()
+        {
+            if (bundle.isEmpty())
+            {
+                return;
+            }
+
+            datagramPacket.setData(
+                bundle.getBuffer(), bundle.getOffset(), bundle.getLength());
+            if (bundle.getNumPackets() > 1)
+            {
+                packetsBundled.addAndGet(bundle.getNumPackets());
+                bundlesSent.incrementAndGet();
+            }
+
+            try
+            {
+                socket.send(datagramPacket);
+                bytesSent.addAndGet(datagramPacket.getLength());
+                packetsSent.incrementAndGet();
+                sendBitrate.update(
+                    datagramPacket.getLength(), System.currentTimeMillis());
+            }
+            catch (IOException ioe)
+            {
+                logger.warn("Failed to send bundle to " + target + ": ", ioe);
+            }
+            finally
+            {
+                bundle.reset();
+            }
+        }
+    }
+
+    /**
+     * A packet (or message) received from the socket and queued for a
+     * {@link ReceiveWorker}.
+     */
+    private static class ReceivedPacket
+    {
+        private final PacketHandler handler;
+        private final byte[] buf;
+        private final int len;
+        private final int sourceEndpointId;
+        private final String message;
+
+        private ReceivedPacket(
+                PacketHandler handler,
+                byte[] buf,
+                int len,
+                int sourceEndpointId,
+                String message)
+        {
+            this.handler = handler;
+            this.buf = buf;
+            this.len = len;
+            this.sourceEndpointId = sourceEndpointId;
+            this.message = message;
+        }
+    }
+
+    /**
+     * A thread which handles the received packets for a subset of the
+     * conferences.
+     */
+    private class ReceiveWorker
+        implements Runnable
+    {
+        /**
+         * The queue of packets to handle.
+         */
+        private final BlockingQueue<ReceivedPacket> queue
+            = new ArrayBlockingQueue<>(RECEIVE_WORKER_QUEUE_CAPACITY);
+
+        /**
+         * The number of packets dropped because {@link #queue} was full.
+         */
+        private final AtomicLong packetsDropped = new AtomicLong();
+
+        /**
+         * The number of packets handled.
+         */
+        private final AtomicLong packetsHandled = new AtomicLong();
+
+        /**
+         * Set when the relay is stopped.
+         */
+        private volatile boolean stopped = false;
+
+        /**
+         * Adds a packet to the queue, or drops it if the queue is full.
+         */
+        private void add(ReceivedPacket packet)
+        {
+            if (!queue.offer(packet))
+            {
+                packetsDropped.incrementAndGet();
+                OctoRelay.this.packetsDropped.incrementAndGet();
+                if (packet.buf != null)
+                {
+                    ByteBufferPool.returnBuffer(packet.buf);
+                }
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            while (!stopped)
+            {
+                ReceivedPacket packet;
+                try
+                {
+                    packet = queue.poll(1, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException ie)
+                {
+                    break;
+                }
+                if (packet == null)
+                {
+                    continue;
+                }
+
+                try
+                {
+                    if (packet.message != null)
+                    {
+                        packet.handler.handleMessage(packet.message);
+                    }
+                    else
+                    {
+                        deliverPacket(
+                            packet.handler,
+                            packet.buf,
+                            packet.len,
+                            packet.sourceEndpointId);
+                    }
+                    packetsHandled.incrementAndGet();
+                }
+                catch (Exception e)
+                {
+                    logger.warn("Failed to handle an Octo packet: ", e);
+                }
+            }
+        }
+
+        /**
+         * Gets a JSON representation of the statistics of this worker.
+         */
+        private JSONObject getStatsJson()
+        {
+            JSONObject stats = new JSONObject();
+            stats.put("queue_size", queue.size());
+            stats.put("packets_handled", packetsHandled.get());
+            stats.put("packets_dropped", packetsDropped.get());
+            return stats;
+        }
+    }
+
+    /**
+     * An immutable table which maps an Octo conference ID to a
+     * {@link PacketHandler}, using open addressing with linear probing over
+     * primitive {@code int} keys.
+     */
+    private static class HandlerTable
+    {
+        /**
+         * The keys (conference IDs). Only valid where {@link #handlers} is
+         * not {@code null}.
+         */
+        private final int[] ids;
+
+        /**
+         * The handlers. A {@code null} value marks an empty slot.
+         */
+        private final PacketHandler[] handlers;
+
+        /**
+         * Initializes an empty {@link HandlerTable}.
+         */
+        private HandlerTable()
+        {
+            this(new int[0], new PacketHandler[0]);
+        }
+
+        /**
+         * Initializes a {@link HandlerTable} with a specific mapping, given as
+         * parallel arrays (not necessarily in table layout).
+         */
+        private HandlerTable(int[] ids, PacketHandler[] handlers)
+        {
+            // Keep the load factor at most 0.5.
+            int capacity = 8;
+            while (capacity < 2 * ids.length)
+            {
+                capacity <<= 1;
+            }
+            this.ids = new int[capacity];
+            this.handlers = new PacketHandler[capacity];
+            for (int i = 0; i < ids.length; i++)
+            {
+                int slot = slot(ids[i]);
+                while (this.handlers[slot] != null)
+                {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                this.ids[slot] = ids[i];
+                this.handlers[slot] = handlers[i];
+            }
+        }
+
+        /**
+         * Gets the initial slot for a specific ID.
+         */
+        private int slot(int id)
+        {
+            // Spread the bits, since IDs may have been allocated sequentially.
+            int h = id * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & (handlers.length - 1);
+        }
+
+        /**
+         * Gets the handler for a specific conference ID, or {@code null}.
+         */
+        private PacketHandler get(int id)
+        {
+            if (handlers.length == 0)
+            {
+                return null;
+            }
+            for (int slot = slot(id);
+                 handlers[slot] != null;
+                 slot = (slot + 1) & (handlers.length - 1))
+            {
+                if (ids[slot] == id)
+                {
+                    return handlers[slot];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns a new table which is a copy of this one with the handler for
+         * {@code id} set to {@code handler} (or removed if {@code handler} is
+         * {@code null}).
+         */
+        private HandlerTable with(int id, PacketHandler handler)
+        {
+            int n = 0;
+            int[] newIds = new int[handlers.length + 1];
+            PacketHandler[] newHandlers = new PacketHandler[handlers.length + 1];
+            for (int slot = 0; slot < handlers.length; slot++)
+            {
+                if (handlers[slot] != null && ids[slot] != id)
+                {
+                    newIds[n] = ids[slot];
+                    newHandlers[n] = handlers[slot];
+                    n++;
+                }
+            }
+            if (handler != null)
+            {
+                newIds[n] = id;
+                newHandlers[n] = handler;
+                n++;
+            }
+            return new HandlerTable(
+                Arrays.copyOf(newIds, n), Arrays.copyOf(newHandlers, n));
+        }
+    }
+
+    /**
+     * A direct-mapped cache of the string representations of Octo endpoint
+     * IDs, so that the strings are not re-created for every received packet.
+     * Accessed without locking: an entry is immutable, and a lost update only
+     * results in a cache miss.
+     */
+    private static class EndpointIdCache
+    {
+        /**
+         * The number of entries (must be a power of 2).
+         */
+        private static final int SIZE = 1024;
+
+        /**
+         * The entries.
+         */
+        private final Entry[] entries = new Entry[SIZE];
+
+        /**
+         * Gets the string representation of a specific endpoint ID.
+         */
+        private String get(int endpointId)
+        {
+            int h = endpointId * 0x9E3779B9;
+            int index = (h ^ (h >>> 16)) & (SIZE - 1);
+            Entry entry = entries[index];
+            if (entry == null || entry.endpointId != endpointId)
+            {
+                entry
+                    = new Entry(
+                        endpointId,
+                        OctoPacket.endpointIdToString(endpointId));
+                entries[index] = entry;
+            }
+            return entry.endpointIdString;
+        }
+
+        /**
+         * An entry in the cache.
+         */
+        private static class Entry
+        {
+            private final int endpointId;
+            private final String endpointIdString;
+
+            private Entry(int endpointId, String endpointIdString)
+            {
+                this.endpointId = endpointId;
+                this.endpointIdString = endpointIdString;
+            }
+        }
+    }
+
     /**
      * @return the number of bytes received.
      */
@@ -543,6 +1232,25 @@ public long getReceiveBitrate()
         return receiveBitrate.getRate();
     }
 
+    /**
+     * @return the statistics of the receive workers, or {@code null} if
+     * received packets are not handled by workers.
+     */
+    public JSONArray getReceiveWorkerStats()
+    {
+        if (receiveWorkers.length == 0)
+        {
+            return null;
+        }
+
+        JSONArray stats = new JSONArray();
+        for (ReceiveWorker worker : receiveWorkers)
+        {
+            stats.add(worker.getStatsJson());
+        }
+        return stats;
+    }
+
     /**
      * Gets a JSON representation of the parts of this object's state that
      * are deemed useful for debugging.
@@ -558,6 +1266,11 @@ public JSONObject getDebugState()
         debugState.put("packetsReceived", packetsReceived.get());
         debugState.put("packetsSent", packetsSent.get());
         debugState.put("packetsDropped", packetsDropped.get());
+        debugState.put("receiveWorkers", getReceiveWorkerStats());
+        debugState.put("bundleDelayMs", bundleDelayMs);
+        debugState.put("packetsBundled", packetsBundled.get());
+        debugState.put("bundlesSent", bundlesSent.get());
+        debugState.put("selectiveForwarding", selectiveForwarding);
 
         return debugState;
     }
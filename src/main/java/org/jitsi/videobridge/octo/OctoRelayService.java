@@ -58,6 +58,34 @@
     public static final String PORT_PNAME
         = "org.jitsi.videobridge.octo.BIND_PORT";
 
+    /**
+     * The name of the property which controls the number of worker threads
+     * which handle packets received by the Octo relay. With the default of 0,
+     * packets are handled by the thread which reads from the socket.
+     */
+    public static final String RECEIVE_WORKERS_PNAME
+        = "org.jitsi.videobridge.octo.RECEIVE_WORKERS";
+
+    /**
+     * The name of the property which controls the maximum delay (in
+     * milliseconds) of small Octo packets which are sent bundled together
+     * with other packets to the same relay. Bundling is disabled by default
+     * (0), and should only be enabled when all bridges support receiving
+     * bundles.
+     */
+    public static final String BUNDLE_DELAY_MS_PNAME
+        = "org.jitsi.videobridge.octo.BUNDLE_DELAY_MS";
+
+    /**
+     * The name of the property which enables selective forwarding: bridges
+     * advertise the endpoints whose video their local endpoints want, and
+     * only send video to the remote bridges which want it. Remote bridges
+     * which don't advertise anything still receive all video. Disabled by
+     * default.
+     */
+    public static final String SELECTIVE_FORWARDING_PNAME
+        = "org.jitsi.videobridge.octo.SELECTIVE_FORWARDING";
+
     /**
      * The Octo relay instance used by this {@link OctoRelayService}.
      */
@@ -85,13 +113,17 @@ public void start(BundleContext bundleContext)
         String address = cfg.getString(ADDRESS_PNAME, null);
         String publicAddress = cfg.getString(PUBLIC_ADDRESS_PNAME, address);
         int port = cfg.getInt(PORT_PNAME, -1);
+        int receiveWorkers = cfg.getInt(RECEIVE_WORKERS_PNAME, 0);
 
         if (address != null && (1024 <= port && port <= 0xffff))
         {
             try
             {
-                relay = new OctoRelay(address, port);
+                relay = new OctoRelay(address, port, receiveWorkers);
                 relay.setPublicAddress(publicAddress);
+                relay.setBundleDelayMs(cfg.getInt(BUNDLE_DELAY_MS_PNAME, 0));
+                relay.setSelectiveForwarding(
+                    cfg.getBoolean(SELECTIVE_FORWARDING_PNAME, false));
                 bundleContext
                     .registerService(OctoRelayService.class.getName(), this,
                                      null);
@@ -26,6 +26,7 @@
 import org.jitsi.utils.event.*;
 import org.jitsi.utils.logging.*;
 import org.jitsi.videobridge.*;
+import org.jitsi.videobridge.util.*;
 import org.jitsi.videobridge.xmpp.*;
 import org.jitsi.xmpp.extensions.colibri.*;
 import org.jitsi.xmpp.extensions.jingle.*;
@@ -35,6 +36,8 @@
 
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.stream.*;
 
 /**
@@ -52,6 +55,21 @@ public class OctoTentacle extends PropertyChangeNotifier implements PotentialPac
     private static final Logger logger
             = Logger.getLogger(OctoTentacle.class);
 
+    /**
+     * The interval in milliseconds at which the video interest of the local
+     * endpoints is re-advertised to remote bridges (in addition to when it
+     * changes), because Octo messages can be lost.
+     */
+    private static final long VIDEO_INTEREST_INTERVAL_MS = 5000;
+
+    /**
+     * The time in milliseconds after which the video interest advertised by
+     * a remote bridge is discarded if it is not refreshed. After that the
+     * remote bridge receives all video again.
+     */
+    private static final long VIDEO_INTEREST_TIMEOUT_MS
+        = 3 * VIDEO_INTEREST_INTERVAL_MS;
+
     /**
      * The conference for this {@link OctoTentacle}.
      */
@@ -86,6 +104,60 @@ public class OctoTentacle extends PropertyChangeNotifier implements PotentialPac
     private Set<SocketAddress> targets
             = Collections.unmodifiableSet(new HashSet<>());
 
+    /**
+     * Whether we advertise the video wanted by our local endpoints to the
+     * remote bridges, and only send video to the remote bridges which want
+     * it.
+     */
+    private final boolean selectiveForwarding;
+
+    /**
+     * The targets for video packets, based on the video interest advertised
+     * by the remote bridges. Only used if {@link #selectiveForwarding} is
+     * enabled.
+     */
+    private volatile VideoTargets videoTargets
+        = new VideoTargets(Collections.emptyMap(), targets);
+
+    /**
+     * The video interest advertised by each remote bridge. Also used to
+     * synchronize updates to {@link #videoTargets}.
+     */
+    private final Map<SocketAddress, RemoteVideoInterest> remoteVideoInterests
+        = new HashMap<>();
+
+    /**
+     * The set of endpoint IDs which we last advertised to the remote bridges,
+     * or {@code null} if it needs to be advertised regardless of whether it
+     * changed. Also used to synchronize advertising.
+     */
+    private Set<String> advertisedVideoInterest = null;
+
+    /**
+     * Used to synchronize access to {@link #advertisedVideoInterest}.
+     */
+    private final Object advertiseSyncRoot = new Object();
+
+    /**
+     * Whether a task to advertise the video interest of the local endpoints
+     * has been submitted and has not yet started.
+     */
+    private final AtomicBoolean videoInterestUpdatePending
+        = new AtomicBoolean();
+
+    /**
+     * The task which periodically re-advertises our video interest and
+     * discards stale remote video interest, or {@code null} if
+     * {@link #selectiveForwarding} is disabled.
+     */
+    private final ScheduledFuture<?> videoInterestTask;
+
+    /**
+     * The number of times a video packet was not sent to a remote bridge
+     * because the remote bridge didn't want it.
+     */
+    private final LongAdder videoPacketsNotSent = new LongAdder();
+
     /**
      * Initializes a new {@link OctoTentacle} instance.
      * @param conference the conference.
@@ -121,6 +193,16 @@ protected void consume(@NotNull PacketInfo packetInfo)
             relay = null;
             keyframeRequester = null;
         }
+
+        selectiveForwarding = relay != null && relay.isSelectiveForwarding();
+        videoInterestTask
+            = selectiveForwarding
+                ? TaskPools.SCHEDULED_POOL.scheduleAtFixedRate(
+                    this::refreshVideoInterest,
+                    VIDEO_INTEREST_INTERVAL_MS,
+                    VIDEO_INTEREST_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS)
+                : null;
     }
 
     /**
@@ -151,12 +233,59 @@ public void send(PacketInfo packetInfo)
         {
             relay.sendPacket(
                 packet,
-                targets,
+                getTargets(packetInfo),
                 conference.getGid(),
                 packetInfo.getEndpointId());
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * </p>
+     * The packet is sent synchronously and its data is not modified (the Octo
+     * header is written in the space before the packet, or in a separate
+     * buffer if there is not enough space), so we don't need a copy.
+     */
+    @Override
+    public void sendShared(PacketInfo packetInfo)
+    {
+        Packet packet = packetInfo.getPacket();
+        if (packet != null)
+        {
+            relay.sendPacket(
+                packet,
+                getTargets(packetInfo),
+                conference.getGid(),
+                packetInfo.getEndpointId(),
+                false /* ownsBuffer */);
+        }
+    }
+
+    /**
+     * Gets the remote targets to which a specific packet should be sent.
+     * Video is only sent to the remote bridges which want it (or which have
+     * not told us what they want), everything else is sent to all targets.
+     * @param packetInfo the packet.
+     * @return the set of targets.
+     */
+    private Set<SocketAddress> getTargets(PacketInfo packetInfo)
+    {
+        Set<SocketAddress> targets = this.targets;
+        if (!selectiveForwarding
+            || !(packetInfo.getPacket() instanceof VideoRtpPacket))
+        {
+            return targets;
+        }
+
+        Set<SocketAddress> videoTargets
+            = this.videoTargets.get(packetInfo.getEndpointId());
+        if (videoTargets.size() < targets.size())
+        {
+            videoPacketsNotSent.add(targets.size() - videoTargets.size());
+        }
+        return videoTargets;
+    }
+
     /**
      * Sets the list of remote relays to send packets to.
      * @param relays the list of relay IDs, which are converted to addresses
@@ -268,6 +397,148 @@ public void handleMessage(String message)
         octoEndpoints.messageTransport.onMessage(null /* source */ , message);
     }
 
+    /**
+     * Notifies this {@link OctoTentacle} that the video wanted by one of the
+     * local endpoints has changed. The new combined interest is advertised to
+     * the remote bridges asynchronously, so that changes to multiple
+     * endpoints are coalesced.
+     */
+    public void videoInterestChanged()
+    {
+        if (selectiveForwarding
+            && !targets.isEmpty()
+            && videoInterestUpdatePending.compareAndSet(false, true))
+        {
+            TaskPools.IO_POOL.submit(() -> {
+                videoInterestUpdatePending.set(false);
+                advertiseVideoInterest(false);
+            });
+        }
+    }
+
+    /**
+     * Sends the set of endpoints whose video our local endpoints want to the
+     * remote bridges.
+     * @param force whether to send the message even if the set hasn't changed
+     * since it was last sent.
+     */
+    private void advertiseVideoInterest(boolean force)
+    {
+        String relayId = relay.getId();
+        if (relayId == null || targets.isEmpty())
+        {
+            return;
+        }
+
+        Set<String> videoInterest = new HashSet<>();
+        for (Endpoint endpoint : conference.getLocalEndpoints())
+        {
+            videoInterest.addAll(endpoint.getWantedEndpointIds());
+        }
+
+        synchronized (advertiseSyncRoot)
+        {
+            if (!force && videoInterest.equals(advertisedVideoInterest))
+            {
+                return;
+            }
+            advertisedVideoInterest = videoInterest;
+            sendMessage(
+                EndpointMessageBuilder.createOctoVideoInterestMessage(
+                    relayId, videoInterest));
+        }
+    }
+
+    /**
+     * Periodically re-advertises our video interest, and discards the video
+     * interest of remote bridges which have not refreshed it.
+     */
+    private void refreshVideoInterest()
+    {
+        try
+        {
+            advertiseVideoInterest(true);
+
+            long nowMs = System.currentTimeMillis();
+            synchronized (remoteVideoInterests)
+            {
+                if (remoteVideoInterests.values().removeIf(
+                    i -> nowMs - i.receivedMs > VIDEO_INTEREST_TIMEOUT_MS))
+                {
+                    updateVideoTargets();
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            logger.warn("Failed to refresh the Octo video interest.", e);
+        }
+    }
+
+    /**
+     * Sets the set of endpoints whose video a remote bridge wants to receive.
+     * @param relayId the relay ID of the remote bridge.
+     * @param endpointIds the IDs of the wanted endpoints.
+     */
+    void setRemoteVideoInterest(String relayId, Set<String> endpointIds)
+    {
+        if (!selectiveForwarding)
+        {
+            return;
+        }
+
+        SocketAddress address = OctoRelay.relayIdToSocketAddress(relayId);
+        if (address == null)
+        {
+            return;
+        }
+
+        synchronized (remoteVideoInterests)
+        {
+            RemoteVideoInterest oldInterest
+                = remoteVideoInterests.put(
+                    address,
+                    new RemoteVideoInterest(
+                        endpointIds, System.currentTimeMillis()));
+            if (oldInterest == null
+                || !oldInterest.endpointIds.equals(endpointIds))
+            {
+                updateVideoTargets();
+            }
+        }
+    }
+
+    /**
+     * Recomputes {@link #videoTargets} from the current targets and the
+     * video interest of the remote bridges. Should be called with the lock on
+     * {@link #remoteVideoInterests} held.
+     */
+    private void updateVideoTargets()
+    {
+        Set<SocketAddress> targets = this.targets;
+        Set<SocketAddress> uninformedTargets = new HashSet<>();
+        Map<String, Set<SocketAddress>> targetsBySource = new HashMap<>();
+        for (SocketAddress target : targets)
+        {
+            RemoteVideoInterest interest = remoteVideoInterests.get(target);
+            if (interest == null)
+            {
+                uninformedTargets.add(target);
+                continue;
+            }
+            for (String endpointId : interest.endpointIds)
+            {
+                targetsBySource
+                    .computeIfAbsent(endpointId, k -> new HashSet<>())
+                    .add(target);
+            }
+        }
+
+        // Targets which haven't told us what they want get everything.
+        targetsBySource.values().forEach(t -> t.addAll(uninformedTargets));
+        videoTargets = new VideoTargets(targetsBySource, uninformedTargets);
+    }
+
     /**
      * Sets the list of remote addresses to send Octo packets to.
      * @param targets the list of addresses.
@@ -278,6 +549,21 @@ private void setTargets(Set<SocketAddress> targets)
         {
             this.targets = Collections.unmodifiableSet(targets);
 
+            if (selectiveForwarding)
+            {
+                synchronized (remoteVideoInterests)
+                {
+                    remoteVideoInterests.keySet().retainAll(targets);
+                    updateVideoTargets();
+                }
+                synchronized (advertiseSyncRoot)
+                {
+                    // New remote bridges need to learn what we want.
+                    advertisedVideoInterest = null;
+                }
+                videoInterestChanged();
+            }
+
             if (targets.isEmpty())
             {
                 relay.removeHandler(conference.getGid(), transceiver);
@@ -304,6 +590,10 @@ public void addRtpExtension(RtpExtension rtpExtension)
      */
     public void expire()
     {
+        if (videoInterestTask != null)
+        {
+            videoInterestTask.cancel(false);
+        }
         setRelays(new LinkedList<>());
         octoEndpoints.setEndpoints(Collections.EMPTY_SET);
     }
@@ -332,6 +622,19 @@ public JSONObject getDebugState()
         debugState.put("transceiver", transceiver.getDebugState());
         debugState.put("relay", relay.getDebugState());
         debugState.put("targets", targets.toString());
+        debugState.put("selectiveForwarding", selectiveForwarding);
+        if (selectiveForwarding)
+        {
+            JSONObject remoteVideoInterest = new JSONObject();
+            synchronized (remoteVideoInterests)
+            {
+                remoteVideoInterests.forEach(
+                    (address, interest) -> remoteVideoInterest.put(
+                        address.toString(), interest.endpointIds.toString()));
+            }
+            debugState.put("remoteVideoInterest", remoteVideoInterest);
+            debugState.put("videoPacketsNotSent", videoPacketsNotSent.sum());
+        }
 
         return debugState;
     }
@@ -347,4 +650,70 @@ public void requestKeyframe(long mediaSsrc)
             logger.warn("Failed to request a keyframe from a foreign endpoint.");
         }
     }
+
+    /**
+     * The video interest advertised by a remote bridge.
+     */
+    private static class RemoteVideoInterest
+    {
+        /**
+         * The IDs of the endpoints whose video the remote bridge wants.
+         */
+        private final Set<String> endpointIds;
+
+        /**
+         * The time (in milliseconds since the epoch) at which the interest
+         * was received.
+         */
+        private final long receivedMs;
+
+        /**
+         * Initializes a new {@link RemoteVideoInterest} instance.
+         */
+        private RemoteVideoInterest(Set<String> endpointIds, long receivedMs)
+        {
+            this.endpointIds = endpointIds;
+            this.receivedMs = receivedMs;
+        }
+    }
+
+    /**
+     * An immutable mapping from a source endpoint ID to the set of targets
+     * which should receive its video.
+     */
+    private static class VideoTargets
+    {
+        /**
+         * The targets for the endpoints which at least one remote bridge
+         * wants.
+         */
+        private final Map<String, Set<SocketAddress>> targetsBySource;
+
+        /**
+         * The targets which haven't advertised what they want, and which
+         * therefore receive the video of all endpoints.
+         */
+        private final Set<SocketAddress> uninformedTargets;
+
+        /**
+         * Initializes a new {@link VideoTargets} instance.
+         */
+        private VideoTargets(
+            Map<String, Set<SocketAddress>> targetsBySource,
+            Set<SocketAddress> uninformedTargets)
+        {
+            this.targetsBySource = targetsBySource;
+            this.uninformedTargets = uninformedTargets;
+        }
+
+        /**
+         * Gets the targets for the video of a specific endpoint.
+         */
+        private Set<SocketAddress> get(String endpointId)
+        {
+            Set<SocketAddress> targets
+                = endpointId == null ? null : targetsBySource.get(endpointId);
+            return targets == null ? uninformedTargets : targets;
+        }
+    }
 }
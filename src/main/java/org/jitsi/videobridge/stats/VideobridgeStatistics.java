@@ -276,6 +276,14 @@
      */
     private static final String TOTAL_PACKETS_SENT = "total_packets_sent";
 
+    /**
+     * The name of the stat indicating the total number of dominant speaker
+     * and endpoint ordering changes which were not propagated to the
+     * endpoints on their own.
+     */
+    private static final String TOTAL_SUPPRESSED_SPEECH_ACTIVITY_UPDATES
+        = "total_suppressed_speech_activity_updates";
+
     /**
      * The name of the stat indicating the total number of bytes received in
      * Octo packets.
@@ -318,6 +326,12 @@
      */
     private static final String OCTO_RECEIVE_BITRATE = "octo_receive_bitrate";
 
+    /**
+     * The name of the stat with the per-worker statistics (queue size, handled
+     * and dropped packets) of the Octo receive workers.
+     */
+    private static final String OCTO_RECEIVE_WORKERS = "octo_receive_workers";
+
     /**
      * The name of used memory statistic. Its runtime type is {@code Integer}.
      */
@@ -732,6 +746,9 @@ protected void generate0()
             unlockedSetStat(
                     TOTAL_PACKETS_RECEIVED, jvbStats.totalPacketsReceived.get());
             unlockedSetStat(TOTAL_PACKETS_SENT, jvbStats.totalPacketsSent.get());
+            unlockedSetStat(
+                    TOTAL_SUPPRESSED_SPEECH_ACTIVITY_UPDATES,
+                    jvbStats.totalSuppressedSpeechActivityUpdates.get());
 
             unlockedSetStat(
                     TOTAL_BYTES_RECEIVED_OCTO,
@@ -761,6 +778,9 @@ protected void generate0()
             if (octoRelay != null)
             {
                 unlockedSetStat(RELAY_ID, octoRelay.getId());
+                unlockedSetStat(
+                        OCTO_RECEIVE_WORKERS,
+                        octoRelay.getReceiveWorkerStats());
             }
             if (region != null)
             {
@@ -0,0 +1,241 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.util;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A lock-free ring buffer of (SSRC, audio level) pairs, written by any number
+ * of packet-processing threads and drained by a single thread.
+ *
+ * Writing never blocks and never allocates: each pair is packed in a single
+ * {@code long} slot. If the writers get a full buffer ahead of the reader,
+ * the oldest levels are overwritten, which is fine for audio levels since
+ * only the recent ones matter.
+ */
+public class AudioLevelBuffer
+{
+    /**
+     * The bit which marks a slot as holding a level which has not been read.
+     */
+    private static final long FULL = 1L << 63;
+
+    /**
+     * The position of the lap number in a slot.
+     */
+    private static final int LAP_SHIFT = 40;
+
+    /**
+     * The mask to apply to a lap number. The lap number of a slot tells which
+     * of the indices that map to the slot it was written for.
+     */
+    private static final long LAP_MASK = (1L << 23) - 1;
+
+    /**
+     * The slots.
+     */
+    private final AtomicLongArray slots;
+
+    /**
+     * The mask to apply to an index to get a slot.
+     */
+    private final int mask;
+
+    /**
+     * The number of bits to shift an index by to get its lap number.
+     */
+    private final int lapShift;
+
+    /**
+     * The index of the next slot to write.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The index of the next slot to read. Only accessed by the reader.
+     */
+    private long head = 0;
+
+    /**
+     * The number of levels which were overwritten before they were read.
+     */
+    private final AtomicLong numOverwritten = new AtomicLong();
+
+    /**
+     * Initializes a new {@link AudioLevelBuffer} instance.
+     *
+     * @param capacity the minimum number of levels which the buffer can hold.
+     * It is rounded up to a power of 2.
+     */
+    public AudioLevelBuffer(int capacity)
+    {
+        int size = 1;
+        while (size < capacity)
+        {
+            size <<= 1;
+        }
+        slots = new AtomicLongArray(size);
+        mask = size - 1;
+        lapShift = Integer.numberOfTrailingZeros(size);
+    }
+
+    /**
+     * Adds an audio level. Safe to call from any thread.
+     *
+     * @param ssrc the SSRC of the stream.
+     * @param level the audio level (0 to 127).
+     */
+    public void add(long ssrc, int level)
+    {
+        long index = tail.getAndIncrement();
+        long lap = getLap(index);
+        long value
+            = FULL
+                | lap << LAP_SHIFT
+                | (ssrc & 0xFFFF_FFFFL) << 8
+                | (level & 0xFF);
+        int i = (int) index & mask;
+
+        while (true)
+        {
+            long old = slots.get(i);
+            if (old != 0 && compareLaps(getSlotLap(old), lap) > 0)
+            {
+                // A writer for the next lap got here first (we were delayed
+                // for a whole lap), so our level is already stale.
+                numOverwritten.incrementAndGet();
+                return;
+            }
+            if (slots.compareAndSet(i, old, value))
+            {
+                if (old != 0)
+                {
+                    numOverwritten.incrementAndGet();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads and removes the levels in the buffer, in the order in which they
+     * were added. Must only be called from one thread at a time.
+     *
+     * Stops at the first slot whose writer has claimed an index but has not
+     * written it yet; that level and the ones after it are read by the next
+     * call.
+     *
+     * @param consumer the consumer of the levels.
+     * @return the number of levels which were read.
+     */
+    public int drain(LevelConsumer consumer)
+    {
+        long end = tail.get();
+        if (end - head > slots.length())
+        {
+            // The older levels have been (or are being) overwritten.
+            head = end - slots.length();
+        }
+
+        int numRead = 0;
+        while (head < end)
+        {
+            int i = (int) head & mask;
+            long value = slots.get(i);
+            int cmp
+                = value == 0
+                    ? -1
+                    : compareLaps(getSlotLap(value), getLap(head));
+            if (cmp < 0)
+            {
+                // The writer of this index has not completed.
+                break;
+            }
+            if (cmp > 0)
+            {
+                // The level was overwritten by a writer from a later lap,
+                // which counted it.
+                head++;
+                continue;
+            }
+            if (slots.compareAndSet(i, value, 0))
+            {
+                consumer.levelChanged(
+                    value >>> 8 & 0xFFFF_FFFFL, (int) value & 0xFF);
+                numRead++;
+                head++;
+            }
+            // Otherwise a writer from a later lap replaced the level, which
+            // is handled on the next iteration.
+        }
+        return numRead;
+    }
+
+    /**
+     * @return the number of levels which were overwritten before they were
+     * read.
+     */
+    public long getNumOverwritten()
+    {
+        return numOverwritten.get();
+    }
+
+    /**
+     * @return the lap number of an index.
+     */
+    private long getLap(long index)
+    {
+        return (index >>> lapShift) & LAP_MASK;
+    }
+
+    /**
+     * @return the lap number stored in the value of a slot.
+     */
+    private static long getSlotLap(long value)
+    {
+        return (value >>> LAP_SHIFT) & LAP_MASK;
+    }
+
+    /**
+     * Compares two lap numbers, taking wraparound into account.
+     *
+     * @return a negative number, zero or a positive number if {@code a} is
+     * before, equal to or after {@code b}.
+     */
+    private static int compareLaps(long a, long b)
+    {
+        long diff = (a - b) & LAP_MASK;
+        if (diff == 0)
+        {
+            return 0;
+        }
+        return diff < (LAP_MASK + 1) / 2 ? 1 : -1;
+    }
+
+    /**
+     * A consumer of audio levels.
+     */
+    public interface LevelConsumer
+    {
+        /**
+         * Handles an audio level.
+         *
+         * @param ssrc the SSRC of the stream.
+         * @param level the audio level.
+         */
+        void levelChanged(long ssrc, int level);
+    }
+}
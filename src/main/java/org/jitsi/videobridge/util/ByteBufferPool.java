@@ -17,6 +17,8 @@
 package org.jitsi.videobridge.util;
 
 import org.jetbrains.annotations.*;
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
 import org.jitsi.utils.logging.*;
 import org.json.simple.*;
 
@@ -37,27 +39,152 @@
      * footprint smaller.
      * These thresholds were chosen to minimize the used memory for a trace of
      * requests from a test conference. Using finer segmentation (4 thresholds)
-     * results in only a marginal improvement.
+     * results in only a marginal improvement. When
+     * {@link #ENABLE_ADAPTIVE_SIZE_CLASSES_PNAME} is set they are only used
+     * initially, and are later re-derived from the actual requests.
      */
-    private static int T1 = 220;
-    private static int T2 = 775;
-    private static int T3 = 1240;
+    private static final int[] DEFAULT_THRESHOLDS = { 220, 775, 1240 };
 
     /**
-     * The pool of buffers with size <= T1
+     * Returned buffers of this size or larger are not accepted by the pool.
      */
-    private static final PartitionedByteBufferPool pool1
-            = new PartitionedByteBufferPool(T1);
+    static final int MAX_RETURNED_SIZE = 2000;
+
+    /**
+     * The name of the property which enables the per-thread caching of
+     * buffers (see {@link ThreadLocalByteBufferPool}).
+     */
+    public static final String ENABLE_THREAD_LOCAL_CACHE_PNAME
+        = "org.jitsi.videobridge.ByteBufferPool.ENABLE_THREAD_LOCAL_CACHE";
+
+    /**
+     * Whether per-thread caching of buffers is enabled by default.
+     */
+    private static final boolean ENABLE_THREAD_LOCAL_CACHE_DEFAULT = false;
+
+    /**
+     * The name of the property which enables re-deriving the size classes from
+     * a histogram of the requested sizes.
+     */
+    public static final String ENABLE_ADAPTIVE_SIZE_CLASSES_PNAME
+        = "org.jitsi.videobridge.ByteBufferPool.ENABLE_ADAPTIVE_SIZE_CLASSES";
+
+    /**
+     * Whether adaptive size classes are enabled by default.
+     */
+    private static final boolean ENABLE_ADAPTIVE_SIZE_CLASSES_DEFAULT = false;
+
+    /**
+     * The name of the property which enables periodically releasing buffers
+     * which were not used.
+     */
+    public static final String ENABLE_TRIM_PNAME
+        = "org.jitsi.videobridge.ByteBufferPool.ENABLE_TRIM";
+
+    /**
+     * Whether releasing unused buffers is enabled by default.
+     */
+    private static final boolean ENABLE_TRIM_DEFAULT = false;
+
+    /**
+     * The name of the property which sets the interval in milliseconds at
+     * which the size classes are re-evaluated and unused buffers are
+     * released.
+     */
+    public static final String MAINTENANCE_INTERVAL_MS_PNAME
+        = "org.jitsi.videobridge.ByteBufferPool.MAINTENANCE_INTERVAL_MS";
+
+    /**
+     * The default maintenance interval in milliseconds.
+     */
+    private static final long MAINTENANCE_INTERVAL_MS_DEFAULT = 60_000;
+
+    /**
+     * The minimum number of requests in the histogram needed to re-derive the
+     * size classes.
+     */
+    private static final long MIN_RESIZE_SAMPLES = 10_000;
+
+    /**
+     * The size classes are only replaced if the new ones are expected to use
+     * less than this fraction of the memory used by the current ones (to
+     * avoid replacing the pools because of minor fluctuations).
+     */
+    private static final double RESIZE_COST_RATIO = 0.9;
+
+    /**
+     * Whether to use {@link ThreadLocalByteBufferPool} instead of
+     * {@link PartitionedByteBufferPool}.
+     */
+    private static final boolean ENABLE_THREAD_LOCAL_CACHE;
+
+    /**
+     * Whether to re-derive the size classes from the requested sizes.
+     */
+    private static final boolean ENABLE_ADAPTIVE_SIZE_CLASSES;
+
+    /**
+     * Whether to periodically release unused buffers.
+     */
+    private static final boolean ENABLE_TRIM;
+
+    static
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+        ENABLE_THREAD_LOCAL_CACHE
+            = cfg != null
+                ? cfg.getBoolean(
+                    ENABLE_THREAD_LOCAL_CACHE_PNAME,
+                    ENABLE_THREAD_LOCAL_CACHE_DEFAULT)
+                : ENABLE_THREAD_LOCAL_CACHE_DEFAULT;
+        ENABLE_ADAPTIVE_SIZE_CLASSES
+            = cfg != null
+                ? cfg.getBoolean(
+                    ENABLE_ADAPTIVE_SIZE_CLASSES_PNAME,
+                    ENABLE_ADAPTIVE_SIZE_CLASSES_DEFAULT)
+                : ENABLE_ADAPTIVE_SIZE_CLASSES_DEFAULT;
+        ENABLE_TRIM
+            = cfg != null
+                ? cfg.getBoolean(ENABLE_TRIM_PNAME, ENABLE_TRIM_DEFAULT)
+                : ENABLE_TRIM_DEFAULT;
+    }
+
+    /**
+     * The current size classes. Replaced as a whole when the thresholds
+     * change.
+     */
+    private static volatile SizeClasses sizeClasses
+        = new SizeClasses(DEFAULT_THRESHOLDS);
+
+    /**
+     * The largest size which was registered with
+     * {@link #requireSizeClass(int)}, or 0. The largest size class is always
+     * at least this large.
+     */
+    private static int requiredSize = 0;
+
+    /**
+     * The histogram of requested sizes, or {@code null} if adaptive size
+     * classes are disabled.
+     */
+    private static final SizeHistogram histogram
+        = ENABLE_ADAPTIVE_SIZE_CLASSES
+            ? new SizeHistogram(MAX_RETURNED_SIZE - 1) : null;
+
+    /**
+     * The number of times the size classes were replaced.
+     */
+    private static final AtomicInteger numResizes = new AtomicInteger(0);
+
     /**
-     * The pool of buffers with size in (T1, T2]
+     * The number of allocations made by pools which have since been replaced.
      */
-    private static final PartitionedByteBufferPool pool2
-            = new PartitionedByteBufferPool(T2);
+    private static final AtomicLong numRetiredAllocations = new AtomicLong(0);
+
     /**
-     * The pool of buffers with size in (T2, T3]
+     * The total number of buffers released because they were unused.
      */
-    private static final PartitionedByteBufferPool pool3
-            = new PartitionedByteBufferPool(T3);
+    private static final AtomicLong numTrimmed = new AtomicLong(0);
 
     /**
      * The {@link Logger}
@@ -96,6 +223,42 @@
      */
     private static final AtomicInteger numReturns = new AtomicInteger(0);
 
+    /**
+     * The number of returned buffers which were too large to be pooled and
+     * were discarded.
+     */
+    private static final AtomicInteger numLargeReturns = new AtomicInteger(0);
+
+    static
+    {
+        if (ENABLE_ADAPTIVE_SIZE_CLASSES || ENABLE_TRIM)
+        {
+            ConfigurationService cfg = LibJitsi.getConfigurationService();
+            long interval
+                = cfg != null
+                    ? cfg.getLong(
+                        MAINTENANCE_INTERVAL_MS_PNAME,
+                        MAINTENANCE_INTERVAL_MS_DEFAULT)
+                    : MAINTENANCE_INTERVAL_MS_DEFAULT;
+            TaskPools.SCHEDULED_POOL.scheduleAtFixedRate(
+                ByteBufferPool::maintain,
+                interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Creates the pool for a specific size class, according to the
+     * configuration.
+     *
+     * @param defaultBufferSize the size of the buffers in the pool.
+     */
+    private static PartitionedByteBufferPool createPool(int defaultBufferSize)
+    {
+        return ENABLE_THREAD_LOCAL_CACHE
+            ? new ThreadLocalByteBufferPool(defaultBufferSize)
+            : new PartitionedByteBufferPool(defaultBufferSize);
+    }
+
     /**
      * Gets the current thread ID.
      */
@@ -137,18 +300,16 @@ public static byte[] getBuffer(int size)
             numRequests.incrementAndGet();
         }
 
-        byte[] buf;
-        if (size <= T1)
+        if (histogram != null)
         {
-            buf = pool1.getBuffer(size);
+            histogram.record(size);
         }
-        else if (size <= T2)
-        {
-            buf = pool2.getBuffer(size);
-        }
-        else if (size <= T3)
+
+        byte[] buf;
+        PartitionedByteBufferPool pool = sizeClasses.getPoolForRequest(size);
+        if (pool != null)
         {
-            buf = pool3.getBuffer(size);
+            buf = pool.getBuffer(size);
         }
         else
         {
@@ -177,20 +338,13 @@ public static void returnBuffer(@NotNull byte[] buf)
         }
 
         int len = buf.length;
-        if (len <= T1)
-        {
-            pool1.returnBuffer(buf);
-        }
-        else if (len <= T2)
-        {
-            pool2.returnBuffer(buf);
-        }
-        else if (len < 2000)
+        if (len < MAX_RETURNED_SIZE)
         {
-            pool3.returnBuffer(buf);
+            sizeClasses.getPoolForReturn(len).returnBuffer(buf);
         }
         else
         {
+            numLargeReturns.incrementAndGet();
             logger.warn(
                 "Received a suspiciously large buffer (size = " + len + ")");
         }
@@ -219,15 +373,30 @@ public static JSONObject getStatsJson()
         stats.put("num_requests", numRequests.get());
         stats.put("num_large_requests", numLargeRequests.get());
         stats.put("num_returns", numReturns.get());
+        stats.put("num_large_returns", numLargeReturns.get());
+        stats.put("thread_local_cache", ENABLE_THREAD_LOCAL_CACHE);
+        stats.put("adaptive_size_classes", ENABLE_ADAPTIVE_SIZE_CLASSES);
+        stats.put("num_resizes", numResizes.get());
+        stats.put("num_trimmed", numTrimmed.get());
+
+        SizeClasses sizeClasses = ByteBufferPool.sizeClasses;
+        JSONArray thresholds = new JSONArray();
+        for (int threshold : sizeClasses.thresholds)
+        {
+            thresholds.add(threshold);
+        }
+        stats.put("thresholds", thresholds);
         if (enableStatistics)
         {
-            stats.put("pool1", pool1.getStats());
-            stats.put("pool2", pool2.getStats());
-            stats.put("pool3", pool3.getStats());
+            for (int i = 0; i < sizeClasses.pools.length; i++)
+            {
+                stats.put("pool" + (i + 1), sizeClasses.pools[i].getStats());
+            }
         }
 
-        long allAllocations = numLargeRequests.get() + pool1.getNumAllocations()
-                + pool2.getNumAllocations() + pool3.getNumAllocations();
+        long allAllocations = numLargeRequests.get()
+                + numRetiredAllocations.get()
+                + sizeClasses.getNumAllocations();
 
         stats.put(
                 "allocation_percent",
@@ -243,8 +412,238 @@ public static JSONObject getStatsJson()
     public static void enableStatistics(boolean enable)
     {
         enableStatistics = enable;
-        pool1.enableStatistics(enable);
-        pool2.enableStatistics(enable);
-        pool3.enableStatistics(enable);
+        for (PartitionedByteBufferPool pool : sizeClasses.pools)
+        {
+            pool.enableStatistics(enable);
+        }
+    }
+
+    /**
+     * Runs periodically to re-derive the size classes (if enabled) and to
+     * release unused buffers (if enabled).
+     */
+    private static void maintain()
+    {
+        try
+        {
+            if (ENABLE_ADAPTIVE_SIZE_CLASSES)
+            {
+                maybeResize();
+            }
+            if (ENABLE_TRIM)
+            {
+                int trimmed = 0;
+                for (PartitionedByteBufferPool pool : sizeClasses.pools)
+                {
+                    trimmed += pool.trim();
+                }
+                numTrimmed.addAndGet(trimmed);
+                if (trimmed > 0 && logger.isDebugEnabled())
+                {
+                    logger.debug("Released " + trimmed + " unused buffers.");
+                }
+            }
+        }
+        catch (Throwable t)
+        {
+            // Don't let an exception cancel the scheduled task.
+            logger.error("Failed to maintain the pool: ", t);
+        }
+    }
+
+    /**
+     * Computes new size classes from the histogram of requested sizes, and
+     * replaces the current ones if the new ones are expected to use
+     * significantly less memory. The buffers in the old pools are left to the
+     * garbage collector, and buffers of the old sizes which are returned later
+     * are either accepted by a pool which they fit in, or discarded.
+     */
+    private static void maybeResize()
+    {
+        if (histogram.getTotal() < MIN_RESIZE_SAMPLES)
+        {
+            return;
+        }
+
+        long[] counts = histogram.getCountsAndReset();
+        int[] newThresholds
+            = SizeHistogram.computeThresholds(
+                counts, DEFAULT_THRESHOLDS.length, MAX_RETURNED_SIZE - 1);
+        if (newThresholds == null)
+        {
+            return;
+        }
+
+        SizeClasses oldSizeClasses = sizeClasses;
+        long oldCost = SizeHistogram.getCost(counts, oldSizeClasses.thresholds);
+        long newCost = SizeHistogram.getCost(counts, newThresholds);
+        if (newCost >= oldCost * RESIZE_COST_RATIO)
+        {
+            return;
+        }
+
+        setThresholds(newThresholds);
+
+        logger.info("Changed the size classes from "
+                + Arrays.toString(oldSizeClasses.thresholds) + " to "
+                + Arrays.toString(newThresholds) + ", expected memory use "
+                + (100 * newCost / oldCost) + "% of the previous.");
+    }
+
+    /**
+     * Makes sure that requests for buffers of a specific size are served
+     * from a pool (and not allocated every time), by adding a size class for
+     * it if it is larger than all of the current ones. The size class is
+     * kept when the size classes are re-derived.
+     *
+     * @param size the size of the buffers, which must be less than
+     * {@link #MAX_RETURNED_SIZE} (since larger buffers are not accepted back).
+     */
+    public static synchronized void requireSizeClass(int size)
+    {
+        if (size <= 0 || size >= MAX_RETURNED_SIZE)
+        {
+            throw new IllegalArgumentException("size=" + size);
+        }
+
+        if (size > requiredSize)
+        {
+            requiredSize = size;
+            int[] thresholds = sizeClasses.thresholds;
+            if (thresholds[thresholds.length - 1] < size)
+            {
+                setThresholds(thresholds);
+            }
+        }
+    }
+
+    /**
+     * @return the size registered with {@link #requireSizeClass(int)}, or 0.
+     */
+    static synchronized int getRequiredSize()
+    {
+        return requiredSize;
+    }
+
+    /**
+     * Replaces the size registered with {@link #requireSizeClass(int)}
+     * (e.g. to restore it after a test). The current size classes are not
+     * changed until the next call to {@link #setThresholds(int[])}.
+     *
+     * @param size the size, or 0 to not require any.
+     */
+    static synchronized void resetRequiredSize(int size)
+    {
+        requiredSize = size;
+    }
+
+    /**
+     * Replaces the current size classes with new ones (with an additional
+     * class for the size registered with {@link #requireSizeClass(int)}, if
+     * none of them is large enough). The buffers in the old pools are left to
+     * the garbage collector.
+     *
+     * @param thresholds the (increasing) buffer sizes of the new classes.
+     */
+    static synchronized void setThresholds(int[] thresholds)
+    {
+        if (thresholds[thresholds.length - 1] < requiredSize)
+        {
+            thresholds = Arrays.copyOf(thresholds, thresholds.length + 1);
+            thresholds[thresholds.length - 1] = requiredSize;
+        }
+
+        SizeClasses newSizeClasses = new SizeClasses(thresholds);
+        for (PartitionedByteBufferPool pool : newSizeClasses.pools)
+        {
+            pool.enableStatistics(enableStatistics);
+        }
+        SizeClasses oldSizeClasses = sizeClasses;
+        sizeClasses = newSizeClasses;
+        numRetiredAllocations.addAndGet(oldSizeClasses.getNumAllocations());
+        numResizes.incrementAndGet();
+    }
+
+    /**
+     * @return the buffer sizes of the current size classes.
+     */
+    static int[] getThresholds()
+    {
+        return sizeClasses.thresholds.clone();
+    }
+
+    /**
+     * A set of size classes, each with its own pool.
+     */
+    private static class SizeClasses
+    {
+        /**
+         * The (increasing) buffer sizes of the classes.
+         */
+        private final int[] thresholds;
+
+        /**
+         * The pools, one for each size class.
+         */
+        private final PartitionedByteBufferPool[] pools;
+
+        /**
+         * Initializes a new {@link SizeClasses} instance.
+         * @param thresholds the buffer sizes of the classes.
+         */
+        private SizeClasses(int[] thresholds)
+        {
+            this.thresholds = thresholds;
+            pools = new PartitionedByteBufferPool[thresholds.length];
+            for (int i = 0; i < thresholds.length; i++)
+            {
+                pools[i] = createPool(thresholds[i]);
+            }
+        }
+
+        /**
+         * Gets the pool to use for a request of a specific size, or
+         * {@code null} if the size is larger than all classes.
+         */
+        private PartitionedByteBufferPool getPoolForRequest(int size)
+        {
+            for (int i = 0; i < thresholds.length; i++)
+            {
+                if (size <= thresholds[i])
+                {
+                    return pools[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Gets the pool to return a buffer of a specific size to (buffers
+         * larger than all classes go to the last one).
+         */
+        private PartitionedByteBufferPool getPoolForReturn(int len)
+        {
+            for (int i = 0; i < thresholds.length - 1; i++)
+            {
+                if (len <= thresholds[i])
+                {
+                    return pools[i];
+                }
+            }
+            return pools[pools.length - 1];
+        }
+
+        /**
+         * Gets the total number of allocations made by the pools.
+         */
+        private long getNumAllocations()
+        {
+            long allocations = 0;
+            for (PartitionedByteBufferPool pool : pools)
+            {
+                allocations += pool.getNumAllocations();
+            }
+            return allocations;
+        }
     }
 }
@@ -0,0 +1,387 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.util;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * A thread-safe map from primitive {@code long} keys (e.g. SSRCs) to
+ * non-{@code null} objects, optimized for maps which are read for every
+ * packet and modified rarely (e.g. on signaling).
+ *
+ * Reads are lock-free and don't box the key: the entries are kept in an
+ * immutable open-addressing table (with linear probing) in two parallel
+ * arrays, which is replaced as a whole on every modification. Modifications
+ * are synchronized and cost {@code O(size)}.
+ *
+ * @param <V> the type of the values.
+ */
+public class ConcurrentLongObjectMap<V>
+{
+    /**
+     * The current table.
+     */
+    private volatile Table table = Table.EMPTY;
+
+    /**
+     * Gets the value for a specific key.
+     *
+     * @param key the key.
+     * @return the value for {@code key}, or {@code null} if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key)
+    {
+        return (V) table.get(key);
+    }
+
+    /**
+     * @return {@code true} if this map contains a value for {@code key}.
+     */
+    public boolean containsKey(long key)
+    {
+        return table.get(key) != null;
+    }
+
+    /**
+     * Associates a value with a key.
+     *
+     * @param key the key.
+     * @param value the value, which must not be {@code null}.
+     * @return the previous value for {@code key}, or {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V put(long key, V value)
+    {
+        Objects.requireNonNull(value, "value");
+
+        Table oldTable = table;
+        Object oldValue = oldTable.get(key);
+        if (oldValue != value)
+        {
+            table
+                = oldTable.copy(
+                    oldValue == null ? oldTable.size + 1 : oldTable.size,
+                    key,
+                    value,
+                    null);
+        }
+        return (V) oldValue;
+    }
+
+    /**
+     * Associates a value with a key, unless the key already has a value.
+     *
+     * @param key the key.
+     * @param value the value, which must not be {@code null}.
+     * @return the existing value for {@code key}, or {@code null} if
+     * {@code value} was added.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V putIfAbsent(long key, V value)
+    {
+        Object oldValue = table.get(key);
+        if (oldValue == null)
+        {
+            put(key, value);
+        }
+        return (V) oldValue;
+    }
+
+    /**
+     * Removes the value for a specific key.
+     *
+     * @param key the key.
+     * @return the removed value, or {@code null} if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(long key)
+    {
+        Table oldTable = table;
+        Object oldValue = oldTable.get(key);
+        if (oldValue != null)
+        {
+            table
+                = oldTable.copy(
+                    oldTable.size - 1, 0, null, (k, v) -> k == key);
+        }
+        return (V) oldValue;
+    }
+
+    /**
+     * Removes the value for a specific key, only if it is (the same instance
+     * as) a specific value.
+     *
+     * @param key the key.
+     * @param value the value.
+     * @return {@code true} if the value was removed.
+     */
+    public synchronized boolean remove(long key, V value)
+    {
+        if (value == null || table.get(key) != value)
+        {
+            return false;
+        }
+
+        remove(key);
+        return true;
+    }
+
+    /**
+     * Removes all entries whose value matches a specific predicate.
+     *
+     * @param predicate the predicate.
+     * @return {@code true} if any entries were removed.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized boolean removeValuesIf(Predicate<? super V> predicate)
+    {
+        Table oldTable = table;
+        // The predicate is evaluated only once for each entry, so the new
+        // table is sized for exactly the entries which are kept.
+        long[] keptKeys = new long[oldTable.size];
+        Object[] keptValues = new Object[oldTable.size];
+        int numKept = 0;
+        for (int i = 0; i < oldTable.keys.length; i++)
+        {
+            Object value = oldTable.values[i];
+            if (value != null && !predicate.test((V) value))
+            {
+                keptKeys[numKept] = oldTable.keys[i];
+                keptValues[numKept] = value;
+                numKept++;
+            }
+        }
+
+        if (numKept == oldTable.size)
+        {
+            return false;
+        }
+
+        Table newTable = numKept == 0 ? Table.EMPTY : new Table(numKept);
+        for (int i = 0; i < numKept; i++)
+        {
+            newTable.insert(keptKeys[i], keptValues[i]);
+        }
+        table = newTable;
+        return true;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear()
+    {
+        table = Table.EMPTY;
+    }
+
+    /**
+     * @return the number of entries in this map.
+     */
+    public int size()
+    {
+        return table.size;
+    }
+
+    /**
+     * @return {@code true} if this map is empty.
+     */
+    public boolean isEmpty()
+    {
+        return table.size == 0;
+    }
+
+    /**
+     * Performs an action for each entry in this map, as it was when this
+     * method was called.
+     *
+     * @param action the action.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(LongObjectConsumer<? super V> action)
+    {
+        Table table = this.table;
+        for (int i = 0; i < table.keys.length; i++)
+        {
+            Object value = table.values[i];
+            if (value != null)
+            {
+                action.accept(table.keys[i], (V) value);
+            }
+        }
+    }
+
+    /**
+     * @return a snapshot of the values in this map.
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values()
+    {
+        Table table = this.table;
+        List<V> values = new ArrayList<>(table.size);
+        for (Object value : table.values)
+        {
+            if (value != null)
+            {
+                values.add((V) value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * An action on an entry with a primitive {@code long} key.
+     *
+     * @param <V> the type of the value.
+     */
+    public interface LongObjectConsumer<V>
+    {
+        /**
+         * Performs the action.
+         */
+        void accept(long key, V value);
+    }
+
+    /**
+     * A predicate on an entry, used internally.
+     */
+    private interface EntryPredicate
+    {
+        boolean test(long key, Object value);
+    }
+
+    /**
+     * An immutable open-addressing hash table. A slot is empty if its value
+     * is {@code null}.
+     */
+    private static class Table
+    {
+        /**
+         * The empty table.
+         */
+        private static final Table EMPTY = new Table(0);
+
+        /**
+         * The keys.
+         */
+        private final long[] keys;
+
+        /**
+         * The values.
+         */
+        private final Object[] values;
+
+        /**
+         * The number of entries.
+         */
+        private final int size;
+
+        /**
+         * Initializes a new empty {@link Table} with enough room for a
+         * specific number of entries (at a load factor of at most 0.5).
+         */
+        private Table(int size)
+        {
+            int capacity = 2;
+            while (capacity < 2 * size)
+            {
+                capacity <<= 1;
+            }
+            keys = new long[capacity];
+            values = new Object[capacity];
+            this.size = size;
+        }
+
+        /**
+         * Gets the slot at which to start probing for a specific key.
+         */
+        private static int hash(long key, int mask)
+        {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        /**
+         * Gets the value for a specific key.
+         */
+        private Object get(long key)
+        {
+            int mask = keys.length - 1;
+            for (int i = hash(key, mask); ; i = (i + 1) & mask)
+            {
+                Object value = values[i];
+                if (value == null || keys[i] == key)
+                {
+                    return value;
+                }
+            }
+        }
+
+        /**
+         * Inserts an entry in a table which is being built.
+         */
+        private void insert(long key, Object value)
+        {
+            int mask = keys.length - 1;
+            int i = hash(key, mask);
+            while (values[i] != null && keys[i] != key)
+            {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        /**
+         * Creates a copy of this table with some entries removed and/or an
+         * entry added or replaced.
+         *
+         * @param newSize the number of entries in the new table.
+         * @param key the key of the entry to add (if {@code value} is not
+         * {@code null}).
+         * @param value the value of the entry to add, or {@code null}.
+         * @param removePredicate the predicate for the entries to remove, or
+         * {@code null}.
+         * @return the new table.
+         */
+        private Table copy(
+            int newSize, long key, Object value, EntryPredicate removePredicate)
+        {
+            if (newSize == 0)
+            {
+                return EMPTY;
+            }
+
+            Table newTable = new Table(newSize);
+            for (int i = 0; i < keys.length; i++)
+            {
+                Object v = values[i];
+                if (v != null
+                    && (removePredicate == null
+                        || !removePredicate.test(keys[i], v)))
+                {
+                    newTable.insert(keys[i], v);
+                }
+            }
+            if (value != null)
+            {
+                newTable.insert(key, value);
+            }
+            return newTable;
+        }
+    }
+}
@@ -56,11 +56,6 @@
     private static final Logger logger
             = Logger.getLogger(PartitionedByteBufferPool.class);
 
-    /**
-     * Used to select a partition at random.
-     */
-    private static final Random random = new Random();
-
     /**
      * The partitions.
      */
@@ -100,11 +95,12 @@ void enableStatistics(boolean enable)
     }
 
     /**
-     * Returns a random partition.
+     * Returns a random partition. We use {@link ThreadLocalRandom} to avoid
+     * contention on a shared {@link Random} instance.
      */
     private Partition getPartition()
     {
-        return partitions[random.nextInt(NUM_PARTITIONS)];
+        return partitions[ThreadLocalRandom.current().nextInt(NUM_PARTITIONS)];
     }
 
     /**
@@ -123,6 +119,47 @@ void returnBuffer(byte[] buf)
         getPartition().returnBuffer(buf);
     }
 
+    /**
+     * Moves up to {@code maxBuffers} buffers from one of the partitions to a
+     * specific collection, without allocating new buffers. The partition's
+     * lock is only taken once.
+     *
+     * @param dst the collection to add the buffers to.
+     * @param maxBuffers the maximum number of buffers to move.
+     * @return the number of buffers which were moved.
+     */
+    int drainTo(Collection<byte[]> dst, int maxBuffers)
+    {
+        return getPartition().drainTo(dst, maxBuffers);
+    }
+
+    /**
+     * @return the default (and minimum) size of the buffers in this pool.
+     */
+    int getDefaultBufferSize()
+    {
+        return defaultBufferSize;
+    }
+
+    /**
+     * Releases the buffers which were idle during the whole period since the
+     * last call to this method (keeping at least the initial number of buffers
+     * in each partition). The number of buffers which stayed idle in a
+     * partition is the low-water mark of its queue, so what remains in the
+     * pool is the high-water mark of the number of buffers in use.
+     *
+     * @return the number of buffers which were released.
+     */
+    int trim()
+    {
+        int trimmed = 0;
+        for (Partition partition : partitions)
+        {
+            trimmed += partition.trim();
+        }
+        return trimmed;
+    }
+
     /**
      * Adds statistics for this pool to the given JSON object.
      * @param stats the JSON object to add stats to.
@@ -233,6 +270,18 @@ long getNumAllocations()
         private final RateStatistics returnRate
             = new RateStatistics(1000, 1000);
 
+        /**
+         * The minimum number of buffers in {@link #pool} since the last call
+         * to {@link #trim()}. Updated without synchronization, since an
+         * occasional lost update only makes trimming slightly less accurate.
+         */
+        private volatile int minIdle;
+
+        /**
+         * The number of buffers released by {@link #trim()}.
+         */
+        private final AtomicLong numTrimmed = new AtomicLong(0);
+
         /**
          * Initializes a new partition.
          * @param id
@@ -245,6 +294,19 @@ long getNumAllocations()
             {
                 pool.add(new byte[defaultBufferSize]);
             }
+            minIdle = initialSize;
+        }
+
+        /**
+         * Updates {@link #minIdle} after buffers were taken from the pool.
+         */
+        private void updateMinIdle()
+        {
+            int idle = pool.size();
+            if (idle < minIdle)
+            {
+                minIdle = idle;
+            }
         }
 
         /**
@@ -273,6 +335,7 @@ private byte[] getBuffer(int requiredSize)
             }
 
             byte[] buf = pool.poll();
+            updateMinIdle();
             if (buf == null)
             {
                 buf = new byte[Math.max(defaultBufferSize, requiredSize)];
@@ -361,6 +424,45 @@ private void returnBuffer(@NotNull byte[] buf)
             }
         }
 
+        /**
+         * Moves up to {@code maxBuffers} buffers from this partition to a
+         * specific collection.
+         *
+         * @param dst the collection to add the buffers to.
+         * @param maxBuffers the maximum number of buffers to move.
+         * @return the number of buffers which were moved.
+         */
+        private int drainTo(Collection<byte[]> dst, int maxBuffers)
+        {
+            int n = pool.drainTo(dst, maxBuffers);
+            updateMinIdle();
+            if (enableStatistics)
+            {
+                numRequests.addAndGet(n);
+                numNoAllocationNeeded.addAndGet(n);
+                requestRate.update(n, System.currentTimeMillis());
+            }
+            return n;
+        }
+
+        /**
+         * Releases the buffers which stayed idle since the last call.
+         *
+         * @return the number of buffers which were released.
+         */
+        private int trim()
+        {
+            int toTrim = Math.min(minIdle, pool.size() - INITIAL_SIZE);
+            int trimmed = 0;
+            while (trimmed < toTrim && pool.poll() != null)
+            {
+                trimmed++;
+            }
+            minIdle = pool.size();
+            numTrimmed.addAndGet(trimmed);
+            return trimmed;
+        }
+
         /**
          * Gets a snapshot of the statistics of this partition in JSON format.
          */
@@ -386,6 +488,7 @@ private JSONObject getStatsJson()
             stats.put("num_small_returns", numSmallReturns.get());
             stats.put("num_large_requests", numLargeRequests.get());
             stats.put("num_small_discarded", numSmallBuffersDiscarded.get());
+            stats.put("num_trimmed", numTrimmed.get());
 
             return stats;
         }
@@ -0,0 +1,274 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.util;
+
+import org.jitsi.utils.concurrent.*;
+import org.json.simple.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Runs {@link RecurringRunnable}s on a number of independent
+ * {@link RecurringRunnableExecutor}s (shards), so that a slow task only delays
+ * the tasks on its own shard. Tasks are placed on a shard based on an
+ * affinity key (e.g. the ID of a conference), so that related tasks run on
+ * the same thread.
+ *
+ * Keeps track of the scheduling lag (the time between when a task became due
+ * and when it was actually run) and the run time of the tasks, aggregated by
+ * the class of the task.
+ */
+public class ShardedRecurringRunnableExecutor
+{
+    /**
+     * The shards.
+     */
+    private final RecurringRunnableExecutor[] shards;
+
+    /**
+     * Maps a registered {@link RecurringRunnable} to the wrapper which was
+     * registered with its shard.
+     */
+    private final Map<RecurringRunnable, TimedRecurringRunnable> registered
+        = new ConcurrentHashMap<>();
+
+    /**
+     * The statistics for each type (class) of task.
+     */
+    private final Map<String, TaskStats> taskStats = new ConcurrentHashMap<>();
+
+    /**
+     * Initializes a new {@link ShardedRecurringRunnableExecutor}.
+     *
+     * @param name the name of the executor (used to name the threads).
+     * @param numShards the number of shards.
+     */
+    public ShardedRecurringRunnableExecutor(String name, int numShards)
+    {
+        shards = new RecurringRunnableExecutor[Math.max(1, numShards)];
+        for (int i = 0; i < shards.length; i++)
+        {
+            shards[i] = new RecurringRunnableExecutor(name + "-" + i);
+        }
+    }
+
+    /**
+     * Registers a {@link RecurringRunnable} to be run on the shard selected by
+     * a specific affinity key.
+     *
+     * @param recurringRunnable the task to register.
+     * @param affinityKey the key which selects the shard. Tasks registered
+     * with equal keys run on the same shard.
+     * @return {@code true} if the task was registered, and {@code false} if
+     * it was already registered.
+     */
+    public boolean registerRecurringRunnable(
+        RecurringRunnable recurringRunnable, Object affinityKey)
+    {
+        TaskStats stats
+            = taskStats.computeIfAbsent(
+                recurringRunnable.getClass().getSimpleName(),
+                k -> new TaskStats());
+        TimedRecurringRunnable timed
+            = new TimedRecurringRunnable(recurringRunnable, stats);
+        if (registered.putIfAbsent(recurringRunnable, timed) != null)
+        {
+            return false;
+        }
+
+        shards[Math.floorMod(Objects.hashCode(affinityKey), shards.length)]
+            .registerRecurringRunnable(timed);
+        return true;
+    }
+
+    /**
+     * De-registers a {@link RecurringRunnable}.
+     *
+     * @param recurringRunnable the task to de-register.
+     * @return {@code true} if the task was de-registered, and {@code false}
+     * if it was not registered.
+     */
+    public boolean deRegisterRecurringRunnable(
+        RecurringRunnable recurringRunnable)
+    {
+        TimedRecurringRunnable timed = registered.remove(recurringRunnable);
+        if (timed == null)
+        {
+            return false;
+        }
+
+        // We don't keep track of the shard, and de-registering from the
+        // others is harmless.
+        for (RecurringRunnableExecutor shard : shards)
+        {
+            shard.deRegisterRecurringRunnable(timed);
+        }
+        return true;
+    }
+
+    /**
+     * Gets a JSON representation of the statistics of this executor.
+     */
+    public JSONObject getStatsJson()
+    {
+        JSONObject stats = new JSONObject();
+        stats.put("num_shards", shards.length);
+        stats.put("num_tasks", registered.size());
+        JSONObject tasks = new JSONObject();
+        taskStats.forEach((type, s) -> tasks.put(type, s.getJson()));
+        stats.put("tasks", tasks);
+        return stats;
+    }
+
+    /**
+     * Aggregated statistics for a type of task.
+     */
+    private static class TaskStats
+    {
+        /**
+         * The number of runs.
+         */
+        private final LongAdder numRuns = new LongAdder();
+
+        /**
+         * The total scheduling lag in milliseconds.
+         */
+        private final LongAdder totalLagMs = new LongAdder();
+
+        /**
+         * The maximum scheduling lag in milliseconds.
+         */
+        private final AtomicLong maxLagMs = new AtomicLong();
+
+        /**
+         * The total run time in nanoseconds.
+         */
+        private final LongAdder totalRunTimeNs = new LongAdder();
+
+        /**
+         * The maximum run time in nanoseconds.
+         */
+        private final AtomicLong maxRunTimeNs = new AtomicLong();
+
+        /**
+         * Records a run of a task.
+         *
+         * @param lagMs the scheduling lag in milliseconds.
+         * @param runTimeNs the run time in nanoseconds.
+         */
+        private void update(long lagMs, long runTimeNs)
+        {
+            numRuns.increment();
+            totalLagMs.add(lagMs);
+            maxLagMs.accumulateAndGet(lagMs, Math::max);
+            totalRunTimeNs.add(runTimeNs);
+            maxRunTimeNs.accumulateAndGet(runTimeNs, Math::max);
+        }
+
+        /**
+         * Gets a JSON representation of these statistics.
+         */
+        private JSONObject getJson()
+        {
+            long numRuns = Math.max(1, this.numRuns.sum());
+            JSONObject json = new JSONObject();
+            json.put("num_runs", this.numRuns.sum());
+            json.put("average_lag_ms", (double) totalLagMs.sum() / numRuns);
+            json.put("max_lag_ms", maxLagMs.get());
+            json.put(
+                "average_run_time_ms",
+                totalRunTimeNs.sum() / 1e6 / numRuns);
+            json.put("max_run_time_ms", maxRunTimeNs.get() / 1e6);
+            return json;
+        }
+    }
+
+    /**
+     * Wraps a {@link RecurringRunnable} and measures its scheduling lag and
+     * run time.
+     */
+    private static class TimedRecurringRunnable
+        implements RecurringRunnable
+    {
+        /**
+         * The wrapped task.
+         */
+        private final RecurringRunnable recurringRunnable;
+
+        /**
+         * The statistics to update.
+         */
+        private final TaskStats stats;
+
+        /**
+         * The time (in milliseconds since the epoch) at which the task is
+         * due to run, as last reported by {@link #getTimeUntilNextRun()}.
+         */
+        private long dueTimeMs = -1;
+
+        /**
+         * Initializes a new {@link TimedRecurringRunnable}.
+         */
+        private TimedRecurringRunnable(
+            RecurringRunnable recurringRunnable, TaskStats stats)
+        {
+            this.recurringRunnable = recurringRunnable;
+            this.stats = stats;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getTimeUntilNextRun()
+        {
+            long timeUntilNextRun = recurringRunnable.getTimeUntilNextRun();
+
+            // Only the first time the task is reported as due counts, the
+            // executor may ask again before running it.
+            if (timeUntilNextRun > 0 || dueTimeMs == -1)
+            {
+                dueTimeMs
+                    = System.currentTimeMillis()
+                        + Math.max(0, timeUntilNextRun);
+            }
+            return timeUntilNextRun;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run()
+        {
+            long startNs = System.nanoTime();
+            long lagMs
+                = dueTimeMs == -1
+                    ? 0 : Math.max(0, System.currentTimeMillis() - dueTimeMs);
+            try
+            {
+                recurringRunnable.run();
+            }
+            finally
+            {
+                dueTimeMs = -1;
+                stats.update(lagMs, System.nanoTime() - startNs);
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.util;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A histogram of requested buffer sizes, used by {@link ByteBufferPool} to
+ * derive the boundaries of its size classes from the actual traffic.
+ * Sizes are counted in buckets of {@link #BUCKET_WIDTH} bytes, and the
+ * boundaries which it produces are bucket upper bounds (capped to a maximum
+ * size).
+ */
+class SizeHistogram
+{
+    /**
+     * The width of a bucket in bytes.
+     */
+    static final int BUCKET_WIDTH = 16;
+
+    /**
+     * The counts for each bucket. Bucket {@code b} counts sizes in
+     * {@code (b * BUCKET_WIDTH, (b + 1) * BUCKET_WIDTH]}.
+     */
+    private final LongAdder[] buckets;
+
+    /**
+     * Initializes a new {@link SizeHistogram} for sizes up to (and
+     * including) {@code maxSize}. Larger sizes are ignored.
+     *
+     * @param maxSize the maximum size to count.
+     */
+    SizeHistogram(int maxSize)
+    {
+        buckets = new LongAdder[getBucket(maxSize) + 1];
+        for (int i = 0; i < buckets.length; i++)
+        {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Gets the index of the bucket for a specific size.
+     */
+    private static int getBucket(int size)
+    {
+        return size <= 0 ? 0 : (size - 1) / BUCKET_WIDTH;
+    }
+
+    /**
+     * Gets the upper bound (inclusive) of a specific bucket.
+     */
+    private static int getUpperBound(int bucket)
+    {
+        return (bucket + 1) * BUCKET_WIDTH;
+    }
+
+    /**
+     * Records a request for a buffer of a specific size.
+     *
+     * @param size the requested size.
+     */
+    void record(int size)
+    {
+        int bucket = getBucket(size);
+        if (bucket < buckets.length)
+        {
+            buckets[bucket].increment();
+        }
+    }
+
+    /**
+     * Gets the current counts for all buckets and resets the histogram.
+     */
+    long[] getCountsAndReset()
+    {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++)
+        {
+            counts[i] = buckets[i].sumThenReset();
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the total number of requests recorded since the last reset.
+     */
+    long getTotal()
+    {
+        long total = 0;
+        for (LongAdder bucket : buckets)
+        {
+            total += bucket.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Computes the amount of memory which would be used to serve the requests
+     * in {@code counts} with a specific set of size classes. Requests which
+     * don't fit in any class are charged the upper bound of the last bucket.
+     *
+     * @param counts the bucket counts.
+     * @param thresholds the (increasing) sizes of the classes.
+     * @return the cost.
+     */
+    static long getCost(long[] counts, int[] thresholds)
+    {
+        long cost = 0;
+        int c = 0;
+        for (int b = 0; b < counts.length; b++)
+        {
+            int upperBound = getUpperBound(b);
+            while (c < thresholds.length && thresholds[c] < upperBound)
+            {
+                c++;
+            }
+            cost += counts[b] * (c < thresholds.length
+                ? thresholds[c] : getUpperBound(counts.length - 1));
+        }
+        return cost;
+    }
+
+    /**
+     * Finds the {@code numClasses} size classes which minimize the memory used
+     * to serve the requests in {@code counts} (each request is served with a
+     * buffer of the size of the smallest class which fits it). The largest
+     * class fits the largest request, unless that is above {@code maxSize}.
+     *
+     * @param counts the bucket counts.
+     * @param numClasses the number of classes.
+     * @param maxSize the maximum size of a class. A class whose bucket upper
+     * bound is larger is capped to it.
+     * @return the (increasing) sizes of the classes, or {@code null} if there
+     * are not enough distinct sizes in {@code counts}.
+     */
+    static int[] computeThresholds(long[] counts, int numClasses, int maxSize)
+    {
+        int last = -1, nonEmpty = 0;
+        for (int b = 0; b < counts.length; b++)
+        {
+            if (counts[b] > 0)
+            {
+                last = b;
+                nonEmpty++;
+            }
+        }
+        if (nonEmpty < numClasses)
+        {
+            return null;
+        }
+
+        // prefix[p] is the number of requests in buckets [0, p).
+        int n = last + 1;
+        long[] prefix = new long[n + 1];
+        for (int b = 0; b < n; b++)
+        {
+            prefix[b + 1] = prefix[b] + counts[b];
+        }
+
+        // cost[k][p] is the minimum cost of serving buckets [0, p) with k
+        // classes, the largest of which ends at bucket p - 1.
+        long[][] cost = new long[numClasses + 1][n + 1];
+        int[][] split = new int[numClasses + 1][n + 1];
+        for (int p = 1; p <= n; p++)
+        {
+            cost[0][p] = Long.MAX_VALUE;
+        }
+        for (int k = 1; k <= numClasses; k++)
+        {
+            cost[k][0] = Long.MAX_VALUE;
+            for (int p = 1; p <= n; p++)
+            {
+                cost[k][p] = Long.MAX_VALUE;
+                for (int i = k - 1; i < p; i++)
+                {
+                    if (cost[k - 1][i] == Long.MAX_VALUE)
+                    {
+                        continue;
+                    }
+                    long c = cost[k - 1][i]
+                        + (prefix[p] - prefix[i]) * getUpperBound(p - 1);
+                    if (c < cost[k][p])
+                    {
+                        cost[k][p] = c;
+                        split[k][p] = i;
+                    }
+                }
+            }
+        }
+
+        int[] thresholds = new int[numClasses];
+        for (int k = numClasses, p = n; k > 0; k--)
+        {
+            thresholds[k - 1] = Math.min(getUpperBound(p - 1), maxSize);
+            p = split[k][p];
+        }
+        return thresholds;
+    }
+}
@@ -17,18 +17,61 @@
 package org.jitsi.videobridge.util;
 
 import org.jitsi.nlj.util.*;
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
 import org.jitsi.utils.logging.*;
+import org.json.simple.*;
 
+import java.lang.reflect.*;
 import java.util.concurrent.*;
 
 public class TaskPools
 {
     private static final Logger classLogger = Logger.getLogger(TaskPools.class);
+
+    /**
+     * The name of the property which enables backing {@link #IO_POOL} with
+     * virtual threads (a new virtual thread per task). This requires a Java
+     * runtime which supports virtual threads, otherwise a warning is logged
+     * and the default cached thread pool is used.
+     */
+    public static final String IO_POOL_USE_VIRTUAL_THREADS_PNAME
+        = "org.jitsi.videobridge.TaskPools.IO_POOL_USE_VIRTUAL_THREADS";
+
+    /**
+     * The name of the property which configures the number of threads in
+     * {@link #CPU_POOL}. The default is the number of available processors.
+     */
+    public static final String CPU_POOL_SIZE_PNAME
+        = "org.jitsi.videobridge.TaskPools.CPU_POOL_SIZE";
+
+    /**
+     * The name of the property which configures the number of threads in
+     * {@link #SCHEDULED_POOL}.
+     */
+    public static final String SCHEDULED_POOL_SIZE_PNAME
+        = "org.jitsi.videobridge.TaskPools.SCHEDULED_POOL_SIZE";
+
+    /**
+     * The default number of threads in {@link #SCHEDULED_POOL}.
+     */
+    private static final int SCHEDULED_POOL_SIZE_DEFAULT = 1;
+
+    /**
+     * The name of the property which configures the number of shards (threads)
+     * of {@link #RECURRING_EXECUTOR}. The default is the number of available
+     * processors.
+     */
+    public static final String RECURRING_EXECUTOR_SHARDS_PNAME
+        = "org.jitsi.videobridge.TaskPools.RECURRING_EXECUTOR_SHARDS";
+
+    private static final ConfigurationService cfg
+        = LibJitsi.getConfigurationService();
+
     /**
      * A global executor service which can be used for non-CPU-intensive tasks.
      */
-    public static ExecutorService IO_POOL =
-            Executors.newCachedThreadPool(new NameableThreadFactory("Global IO pool"));
+    public static ExecutorService IO_POOL = createIoPool();
 
     /**
      * An executor to be used for CPU-intensive tasks.  NOTE that tasks which block should
@@ -36,16 +79,108 @@
      */
     public static ExecutorService CPU_POOL =
             Executors.newFixedThreadPool(
-                    Runtime.getRuntime().availableProcessors(),
+                    cfg != null
+                        ? cfg.getInt(
+                            CPU_POOL_SIZE_PNAME,
+                            Runtime.getRuntime().availableProcessors())
+                        : Runtime.getRuntime().availableProcessors(),
                     new NameableThreadFactory("Global CPU pool")
             );
 
     public static ScheduledExecutorService SCHEDULED_POOL =
-            Executors.newSingleThreadScheduledExecutor(new NameableThreadFactory("Global scheduled pool"));
+            new ScheduledThreadPoolExecutor(
+                    cfg != null
+                        ? cfg.getInt(
+                            SCHEDULED_POOL_SIZE_PNAME,
+                            SCHEDULED_POOL_SIZE_DEFAULT)
+                        : SCHEDULED_POOL_SIZE_DEFAULT,
+                    new NameableThreadFactory("Global scheduled pool"));
+
+    /**
+     * An executor for periodic per-conference tasks (e.g. bandwidth probing),
+     * sharded so that a slow task only delays the tasks on its shard.
+     */
+    public static final ShardedRecurringRunnableExecutor RECURRING_EXECUTOR
+        = new ShardedRecurringRunnableExecutor(
+            "Global recurring executor",
+            cfg != null
+                ? cfg.getInt(
+                    RECURRING_EXECUTOR_SHARDS_PNAME,
+                    Runtime.getRuntime().availableProcessors())
+                : Runtime.getRuntime().availableProcessors());
 
     static {
         classLogger.info("TaskPools detected " + Runtime.getRuntime().availableProcessors() +
-                " processors, creating the CPU pool with that many threads");
+                " processors, creating the CPU pool with " +
+                ((ThreadPoolExecutor) CPU_POOL).getCorePoolSize() + " threads");
+
+    }
+
+    /**
+     * Creates the executor for {@link #IO_POOL}: either a cached thread pool,
+     * or (if configured and supported by the runtime) a virtual thread per
+     * task executor.
+     */
+    private static ExecutorService createIoPool()
+    {
+        if (cfg != null
+            && cfg.getBoolean(IO_POOL_USE_VIRTUAL_THREADS_PNAME, false))
+        {
+            try
+            {
+                // Use reflection, since we compile for Java 8.
+                Method method
+                    = Executors.class.getMethod(
+                        "newVirtualThreadPerTaskExecutor");
+                ExecutorService executor
+                    = (ExecutorService) method.invoke(null);
+                classLogger.info("Using virtual threads for the IO pool.");
+                return executor;
+            }
+            catch (ReflectiveOperationException e)
+            {
+                classLogger.warn("Virtual threads are not supported by this"
+                    + " runtime, using a cached thread pool for the IO pool.");
+            }
+        }
 
+        return Executors.newCachedThreadPool(
+            new NameableThreadFactory("Global IO pool"));
+    }
+
+    /**
+     * Gets a JSON representation of the state of the pools.
+     */
+    public static JSONObject getStatsJson()
+    {
+        JSONObject stats = new JSONObject();
+        stats.put("io_pool", getStatsJson(IO_POOL));
+        stats.put("cpu_pool", getStatsJson(CPU_POOL));
+        stats.put("scheduled_pool", getStatsJson(SCHEDULED_POOL));
+        stats.put("recurring_executor", RECURRING_EXECUTOR.getStatsJson());
+        return stats;
+    }
+
+    /**
+     * Gets a JSON representation of the state of a specific executor.
+     * @param executor the executor.
+     */
+    private static JSONObject getStatsJson(ExecutorService executor)
+    {
+        JSONObject stats = new JSONObject();
+        if (executor instanceof ThreadPoolExecutor)
+        {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            stats.put("pool_size", pool.getPoolSize());
+            stats.put("active_threads", pool.getActiveCount());
+            stats.put("largest_pool_size", pool.getLargestPoolSize());
+            stats.put("queue_size", pool.getQueue().size());
+            stats.put("completed_tasks", pool.getCompletedTaskCount());
+        }
+        else
+        {
+            stats.put("type", executor.getClass().getSimpleName());
+        }
+        return stats;
     }
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.util;
+
+import org.jetbrains.annotations.*;
+import org.json.simple.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A {@link PartitionedByteBufferPool} with a per-thread cache (a "magazine")
+ * of buffers in front of the partitions. Requests and returns are served
+ * from the current thread's magazine without any locking or allocation. When
+ * a magazine is empty it is refilled with a batch of buffers from one of the
+ * partitions (taking the partition's lock once), and when it is full half of
+ * it is spilled back to the partitions.
+ *
+ * Note that buffers are usually requested on one thread (e.g. the one which
+ * reads from a socket) and returned on another (e.g. the one which writes
+ * to a socket), so the magazines mostly act as batching buffers between the
+ * threads and the shared partitions.
+ */
+class ThreadLocalByteBufferPool
+    extends PartitionedByteBufferPool
+{
+    /**
+     * The maximum number of buffers kept in the magazine of each thread.
+     */
+    private static final int MAGAZINE_CAPACITY = 64;
+
+    /**
+     * The per-thread magazines.
+     */
+    private final ThreadLocal<Magazine> magazines
+        = ThreadLocal.withInitial(Magazine::new);
+
+    /**
+     * The number of times a magazine was refilled from the partitions.
+     */
+    private final AtomicLong numRefills = new AtomicLong();
+
+    /**
+     * The number of times a magazine was spilled to the partitions.
+     */
+    private final AtomicLong numSpills = new AtomicLong();
+
+    /**
+     * Initializes a new {@link ThreadLocalByteBufferPool} instance.
+     *
+     * @param defaultBufferSize the size of the buffers in this pool.
+     */
+    ThreadLocalByteBufferPool(int defaultBufferSize)
+    {
+        super(defaultBufferSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    byte[] getBuffer(int size)
+    {
+        if (size > getDefaultBufferSize())
+        {
+            // The magazines only hold buffers of the default size.
+            return super.getBuffer(size);
+        }
+
+        Magazine magazine = magazines.get();
+        if (magazine.size == 0)
+        {
+            numRefills.incrementAndGet();
+            if (drainTo(magazine, MAGAZINE_CAPACITY / 2) == 0)
+            {
+                // The partition we tried is empty. Let it allocate.
+                return super.getBuffer(size);
+            }
+        }
+
+        return magazine.pop();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void returnBuffer(@NotNull byte[] buf)
+    {
+        if (buf.length < getDefaultBufferSize())
+        {
+            // Let the partition account for (and discard) it.
+            super.returnBuffer(buf);
+            return;
+        }
+
+        Magazine magazine = magazines.get();
+        if (magazine.size == MAGAZINE_CAPACITY)
+        {
+            numSpills.incrementAndGet();
+            while (magazine.size > MAGAZINE_CAPACITY / 2)
+            {
+                super.returnBuffer(magazine.pop());
+            }
+        }
+
+        magazine.add(buf);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    JSONObject getStats()
+    {
+        JSONObject stats = super.getStats();
+        stats.put("magazine_capacity", MAGAZINE_CAPACITY);
+        stats.put("num_magazine_refills", numRefills.get());
+        stats.put("num_magazine_spills", numSpills.get());
+        return stats;
+    }
+
+    /**
+     * A bounded stack of buffers owned by a single thread. It extends
+     * {@link AbstractCollection} only so that it can be filled with
+     * {@link java.util.concurrent.BlockingQueue#drainTo(Collection, int)}.
+     */
+    private static class Magazine
+        extends AbstractCollection<byte[]>
+    {
+        /**
+         * The buffers.
+         */
+        private final byte[][] buffers = new byte[MAGAZINE_CAPACITY][];
+
+        /**
+         * The number of buffers currently in {@link #buffers}.
+         */
+        private int size = 0;
+
+        /**
+         * Removes and returns the most recently added buffer.
+         */
+        private byte[] pop()
+        {
+            byte[] buf = buffers[--size];
+            buffers[size] = null;
+            return buf;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean add(byte[] buf)
+        {
+            if (size == MAGAZINE_CAPACITY)
+            {
+                throw new IllegalStateException("Magazine is full");
+            }
+            buffers[size++] = buf;
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Iterator<byte[]> iterator()
+        {
+            return Arrays.asList(buffers).subList(0, size).iterator();
+        }
+    }
+}
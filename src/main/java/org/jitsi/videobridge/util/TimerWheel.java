@@ -0,0 +1,316 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.util;
+
+import java.util.*;
+
+/**
+ * A hierarchical timer wheel which keeps a set of items, each with a
+ * deadline, and returns the items whose deadline has passed as time is
+ * advanced. Scheduling an item and advancing by one tick take constant time
+ * (amortized), so that a large number of items (e.g. all endpoints on the
+ * bridge) can be watched without periodically scanning all of them.
+ *
+ * The wheel has {@link #NUM_LEVELS} levels of {@link #NUM_SLOTS} slots. A slot
+ * at level {@code i} covers {@code NUM_SLOTS^i} ticks; items are moved to
+ * the lower levels as their deadline approaches. Deadlines further than the
+ * range of the wheel (about 16 million ticks) are not lost, they just go
+ * around the top level again.
+ *
+ * Deadlines have the precision of a tick. Instances are thread-safe.
+ *
+ * @param <T> the type of the items.
+ */
+public class TimerWheel<T>
+{
+    /**
+     * The number of bits of a tick which select a slot in a level.
+     */
+    private static final int SLOT_BITS = 6;
+
+    /**
+     * The number of slots in each level.
+     */
+    private static final int NUM_SLOTS = 1 << SLOT_BITS;
+
+    /**
+     * The mask to apply to get a slot in a level.
+     */
+    private static final int SLOT_MASK = NUM_SLOTS - 1;
+
+    /**
+     * The number of levels.
+     */
+    private static final int NUM_LEVELS = 4;
+
+    /**
+     * The number of ticks which the wheel spans.
+     */
+    private static final long RANGE_TICKS = 1L << (SLOT_BITS * NUM_LEVELS);
+
+    /**
+     * The duration of a tick in milliseconds.
+     */
+    private final long tickMs;
+
+    /**
+     * The slots of each level. A slot is {@code null} until it is used.
+     */
+    private final List<Entry<T>>[][] slots;
+
+    /**
+     * The entry of each item in the wheel, so that an item is scheduled at
+     * most once.
+     */
+    private final Map<T, Entry<T>> entries = new HashMap<>();
+
+    /**
+     * The last tick which was processed.
+     */
+    private long currentTick;
+
+    /**
+     * Initializes a new {@link TimerWheel} instance.
+     *
+     * @param tickMs the duration of a tick in milliseconds.
+     * @param nowMs the current time in milliseconds.
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long tickMs, long nowMs)
+    {
+        if (tickMs <= 0)
+        {
+            throw new IllegalArgumentException("tickMs=" + tickMs);
+        }
+        this.tickMs = tickMs;
+        slots = new List[NUM_LEVELS][NUM_SLOTS];
+        currentTick = nowMs / tickMs;
+    }
+
+    /**
+     * Schedules an item to be returned by {@link #advance(long)} once a
+     * specific time has passed. If the item is already scheduled, it keeps the
+     * earlier of the two deadlines.
+     *
+     * @param item the item.
+     * @param deadlineMs the deadline in milliseconds.
+     */
+    public synchronized void schedule(T item, long deadlineMs)
+    {
+        long deadlineTick = toTick(deadlineMs);
+        Entry<T> entry = entries.get(item);
+        if (entry != null)
+        {
+            if (entry.deadlineTick <= deadlineTick)
+            {
+                return;
+            }
+            // The old entry is dropped when its slot is processed.
+            entry.item = null;
+        }
+
+        entry = new Entry<>(item, deadlineTick);
+        entries.put(item, entry);
+        insert(entry, currentTick + 1);
+    }
+
+    /**
+     * Removes an item from the wheel.
+     *
+     * @param item the item.
+     * @return {@code true} if the item was scheduled.
+     */
+    public synchronized boolean remove(T item)
+    {
+        Entry<T> entry = entries.remove(item);
+        if (entry == null)
+        {
+            return false;
+        }
+
+        // The entry is dropped when its slot is processed, but the item is
+        // released now.
+        entry.item = null;
+        return true;
+    }
+
+    /**
+     * Removes all items from the wheel.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        for (List<Entry<T>>[] level : slots)
+        {
+            Arrays.fill(level, null);
+        }
+    }
+
+    /**
+     * @return the number of items in the wheel.
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Advances the wheel to a specific time, and removes and returns the items
+     * whose deadline has passed. The items can be rescheduled by the caller.
+     *
+     * @param nowMs the current time in milliseconds.
+     * @return the items which are due, in no particular order.
+     */
+    public synchronized List<T> advance(long nowMs)
+    {
+        long targetTick = nowMs / tickMs;
+        if (entries.isEmpty())
+        {
+            currentTick = Math.max(currentTick, targetTick);
+            return Collections.emptyList();
+        }
+
+        List<T> due = new ArrayList<>();
+        while (currentTick < targetTick)
+        {
+            currentTick++;
+
+            // Move the entries from the higher levels down, starting with the
+            // highest one, since it may fill the slots which are moved next.
+            for (int level = NUM_LEVELS - 1; level > 0; level--)
+            {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0)
+                {
+                    cascade(level);
+                }
+            }
+
+            int slot = (int) currentTick & SLOT_MASK;
+            List<Entry<T>> entries = slots[0][slot];
+            if (entries != null)
+            {
+                slots[0][slot] = null;
+                for (Entry<T> entry : entries)
+                {
+                    if (entry.item == null)
+                    {
+                        continue;
+                    }
+                    if (entry.deadlineTick <= currentTick)
+                    {
+                        this.entries.remove(entry.item);
+                        due.add(entry.item);
+                    }
+                    else
+                    {
+                        insert(entry, currentTick + 1);
+                    }
+                }
+            }
+        }
+        return due;
+    }
+
+    /**
+     * Converts a time in milliseconds to a tick, rounding up so that items are
+     * never returned before their deadline.
+     */
+    private long toTick(long timeMs)
+    {
+        return timeMs / tickMs + (timeMs % tickMs > 0 ? 1 : 0);
+    }
+
+    /**
+     * Re-inserts the entries of the current slot of a specific level, which
+     * moves them to the lower levels.
+     */
+    private void cascade(int level)
+    {
+        int slot = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+        List<Entry<T>> entries = slots[level][slot];
+        if (entries != null)
+        {
+            slots[level][slot] = null;
+            for (Entry<T> entry : entries)
+            {
+                if (entry.item != null)
+                {
+                    // The slot of the current tick at level 0 has not been
+                    // processed yet, so the entries which are due now go
+                    // there.
+                    insert(entry, currentTick);
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts an entry in the slot for its deadline.
+     *
+     * @param entry the entry.
+     * @param earliestTick the earliest tick at which the entry can be
+     * processed. Entries which are due before it are processed at that tick.
+     */
+    private void insert(Entry<T> entry, long earliestTick)
+    {
+        long tick = Math.max(entry.deadlineTick, earliestTick);
+        // Entries which are beyond the range of the wheel are placed at its
+        // end, and re-inserted when they get there.
+        tick = Math.min(tick, currentTick + RANGE_TICKS - 1);
+
+        long delta = tick - currentTick;
+        int level = 0;
+        while (level < NUM_LEVELS - 1
+            && delta >= 1L << (SLOT_BITS * (level + 1)))
+        {
+            level++;
+        }
+
+        int slot = (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK;
+        List<Entry<T>> entries = slots[level][slot];
+        if (entries == null)
+        {
+            entries = new ArrayList<>();
+            slots[level][slot] = entries;
+        }
+        entries.add(entry);
+    }
+
+    /**
+     * An item in the wheel.
+     */
+    private static class Entry<T>
+    {
+        /**
+         * The item, or {@code null} if it has been removed or rescheduled.
+         */
+        private T item;
+
+        /**
+         * The tick at which the item is due.
+         */
+        private final long deadlineTick;
+
+        /**
+         * Initializes a new {@link Entry} instance.
+         */
+        private Entry(T item, long deadlineTick)
+        {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
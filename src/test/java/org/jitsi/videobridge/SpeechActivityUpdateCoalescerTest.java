@@ -0,0 +1,183 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge;
+
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SpeechActivityUpdateCoalescerTest
+{
+    private static final long MIN_INTERVAL_MS = 200;
+
+    private long nowMs = 1000;
+
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    private final List<Long> delays = new ArrayList<>();
+
+    private final FakeConference conference = new FakeConference();
+
+    private final SpeechActivityUpdateCoalescer<String> coalescer
+        = new SpeechActivityUpdateCoalescer<>(
+            MIN_INTERVAL_MS,
+            (task, delayMs) ->
+            {
+                tasks.add(task);
+                delays.add(delayMs);
+            },
+            () -> nowMs,
+            conference);
+
+    /**
+     * Runs the tasks which have been scheduled, in order.
+     */
+    private void runTasks()
+    {
+        List<Runnable> tasks = new ArrayList<>(this.tasks);
+        this.tasks.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    @Test
+    public void testBurstIsCoalesced()
+    {
+        conference.dominantSpeaker = "A";
+        coalescer.scheduleUpdate(true, true);
+        runTasks();
+        assertEquals(Collections.singletonList("A"), conference.announced);
+
+        nowMs += 10;
+        conference.dominantSpeaker = "B";
+        coalescer.scheduleUpdate(true, true);
+        conference.dominantSpeaker = "C";
+        coalescer.scheduleUpdate(true, false);
+        coalescer.scheduleUpdate(false, true);
+        conference.dominantSpeaker = "D";
+        coalescer.scheduleUpdate(true, true);
+
+        assertEquals(1, tasks.size());
+        assertEquals(MIN_INTERVAL_MS - 10, (long) delays.get(1));
+
+        nowMs += MIN_INTERVAL_MS;
+        runTasks();
+
+        assertEquals(Arrays.asList("A", "D"), conference.announced);
+        assertEquals(2, conference.numEndpointsUpdates);
+        assertEquals(2, coalescer.getNumUpdates());
+        assertEquals(3, coalescer.getNumSuppressedUpdates());
+        assertEquals(3, conference.numSuppressed);
+    }
+
+    @Test
+    public void testRevertedChangeIsNotAnnounced()
+    {
+        conference.dominantSpeaker = "A";
+        coalescer.scheduleUpdate(true, false);
+        runTasks();
+
+        conference.dominantSpeaker = "B";
+        coalescer.scheduleUpdate(true, false);
+        conference.dominantSpeaker = "A";
+        coalescer.scheduleUpdate(true, false);
+        nowMs += MIN_INTERVAL_MS;
+        runTasks();
+
+        assertEquals(Collections.singletonList("A"), conference.announced);
+        assertEquals(1, coalescer.getNumUpdates());
+        // One change merged into the scheduled update, and the update itself.
+        assertEquals(2, coalescer.getNumSuppressedUpdates());
+    }
+
+    @Test
+    public void testRevertedChangeStillPushesEndpoints()
+    {
+        conference.dominantSpeaker = "A";
+        coalescer.scheduleUpdate(true, false);
+        runTasks();
+
+        conference.dominantSpeaker = "B";
+        coalescer.scheduleUpdate(true, true);
+        conference.dominantSpeaker = "A";
+        coalescer.scheduleUpdate(true, false);
+        nowMs += MIN_INTERVAL_MS;
+        runTasks();
+
+        assertEquals(Collections.singletonList("A"), conference.announced);
+        assertEquals(1, conference.numEndpointsUpdates);
+    }
+
+    @Test
+    public void testMinInterval()
+    {
+        coalescer.scheduleUpdate(false, true);
+        assertEquals(0, (long) delays.get(0));
+        runTasks();
+
+        nowMs += MIN_INTERVAL_MS + 1;
+        coalescer.scheduleUpdate(false, true);
+        assertEquals(0, (long) delays.get(1));
+        runTasks();
+
+        nowMs += 50;
+        coalescer.scheduleUpdate(false, true);
+        assertEquals(MIN_INTERVAL_MS - 50, (long) delays.get(2));
+        runTasks();
+
+        assertEquals(3, conference.numEndpointsUpdates);
+        assertEquals(0, coalescer.getNumSuppressedUpdates());
+    }
+
+    private static class FakeConference
+        implements SpeechActivityUpdateCoalescer.Handler<String>
+    {
+        private String dominantSpeaker;
+
+        private final List<String> announced = new ArrayList<>();
+
+        private int numEndpointsUpdates = 0;
+
+        private int numSuppressed = 0;
+
+        @Override
+        public String getDominantEndpoint()
+        {
+            return dominantSpeaker;
+        }
+
+        @Override
+        public void update(
+            boolean dominantSpeakerChanged, boolean endpointsChanged)
+        {
+            if (dominantSpeakerChanged)
+            {
+                announced.add(dominantSpeaker);
+            }
+            if (endpointsChanged)
+            {
+                numEndpointsUpdates++;
+            }
+        }
+
+        @Override
+        public void updateSuppressed()
+        {
+            numSuppressed++;
+        }
+    }
+}
@@ -15,6 +15,9 @@
  */
 package org.jitsi.videobridge;
 
+import org.jitsi.videobridge.cc.vp8.*;
+import org.jitsi.videobridge.octo.*;
+import org.jitsi.videobridge.util.*;
 import org.jitsi.videobridge.xmpp.*;
 import org.junit.runner.*;
 import org.junit.runners.*;
@@ -30,6 +33,14 @@
         FocusControlTest.class,
         EndpointMessageBuilderTest.class,
         MediaStreamTrackFactoryTest.class,
+        SizeHistogramTest.class,
+        ByteBufferPoolTest.class,
+        ConcurrentLongObjectMapTest.class,
+        OctoPacketTest.class,
+        FrameProjectionTableTest.class,
+        SpeechActivityUpdateCoalescerTest.class,
+        AudioLevelBufferTest.class,
+        TimerWheelTest.class,
         BridgeShutdownTest.class, // This one must be the last one
     })
 public class VideoBridgeTestSuite
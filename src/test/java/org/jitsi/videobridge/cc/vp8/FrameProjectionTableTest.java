@@ -0,0 +1,197 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.cc.vp8;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class FrameProjectionTableTest
+{
+    /**
+     * How long a test frame projection is needed after it is created.
+     */
+    private static final long WAIT_MS = 5000;
+
+    private static final long SSRC = 0xdeadbeefL;
+
+    /**
+     * A stand-in for {@link VP8FrameProjection}.
+     */
+    private static class Projection
+    {
+        private final long createdMs;
+
+        private Projection(long createdMs)
+        {
+            this.createdMs = createdMs;
+        }
+
+        private boolean isFullyProjected(long nowMs)
+        {
+            return nowMs - createdMs > WAIT_MS;
+        }
+    }
+
+    private static FrameProjectionTable<Projection> createTable(int size)
+    {
+        return new FrameProjectionTable<>(size, Projection::isFullyProjected);
+    }
+
+    /**
+     * Finds timestamps (after {@code timestamp}) which map to the same slot
+     * as {@code timestamp}.
+     */
+    private static long[] findCollisions(
+        FrameProjectionTable<?> table, long timestamp, int count)
+    {
+        long[] collisions = new long[count];
+        int home = table.getHomeSlot(SSRC, timestamp);
+        int n = 0;
+        for (long ts = timestamp + 3000; n < count; ts += 3000)
+        {
+            if (table.getHomeSlot(SSRC, ts) == home)
+            {
+                collisions[n++] = ts;
+            }
+        }
+        return collisions;
+    }
+
+    @Test
+    public void testGetPut()
+    {
+        FrameProjectionTable<Projection> table = createTable(16);
+        Projection p1 = new Projection(0), p2 = new Projection(0);
+        table.put(SSRC, 1000, p1, 0);
+        table.put(SSRC + 1, 1000, p2, 0);
+
+        assertSame(p1, table.get(SSRC, 1000, 0));
+        assertSame(p2, table.get(SSRC + 1, 1000, 0));
+        assertNull(table.get(SSRC, 4000, 0));
+        assertNull(table.get(SSRC + 2, 1000, 0));
+
+        // Projections which are no longer needed are not returned.
+        assertSame(p1, table.get(SSRC, 1000, WAIT_MS));
+        assertNull(table.get(SSRC, 1000, WAIT_MS + 1));
+
+        // Replace.
+        Projection p3 = new Projection(0);
+        table.put(SSRC, 1000, p3, 0);
+        assertSame(p3, table.get(SSRC, 1000, 0));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void testCollidingTimestamps()
+    {
+        FrameProjectionTable<Projection> table = createTable(16);
+        long ts1 = 1000;
+        long ts2 = findCollisions(table, ts1, 1)[0];
+        assertEquals(
+            table.getHomeSlot(SSRC, ts1), table.getHomeSlot(SSRC, ts2));
+
+        Projection p1 = new Projection(0), p2 = new Projection(10);
+        table.put(SSRC, ts1, p1, 0);
+        table.put(SSRC, ts2, p2, 10);
+
+        // The older frame is still needed (e.g. for retransmissions), so the
+        // newer one must not evict it.
+        assertSame(p1, table.get(SSRC, ts1, 20));
+        assertSame(p2, table.get(SSRC, ts2, 20));
+        assertEquals(0, table.getNumOverflows());
+    }
+
+    @Test
+    public void testReplaceExpired()
+    {
+        FrameProjectionTable<Projection> table = createTable(16);
+        long ts1 = 1000;
+        long ts2 = findCollisions(table, ts1, 1)[0];
+
+        table.put(SSRC, ts1, new Projection(0), 0);
+        long nowMs = WAIT_MS + 1;
+        Projection p2 = new Projection(nowMs);
+        table.put(SSRC, ts2, p2, nowMs);
+
+        // The expired frame was replaced instead of taking another slot.
+        assertEquals(1, table.size());
+        assertNull(table.get(SSRC, ts1, nowMs));
+        assertSame(p2, table.get(SSRC, ts2, nowMs));
+    }
+
+    @Test
+    public void testOverflow()
+    {
+        FrameProjectionTable<Projection> table = createTable(16);
+
+        // More frames which are needed than fit in the table.
+        int numFrames = 16 + 4;
+        Projection[] projections = new Projection[numFrames];
+        for (int i = 0; i < numFrames; i++)
+        {
+            projections[i] = new Projection(i);
+            table.put(SSRC, i * 3000L, projections[i], i);
+        }
+        assertTrue(table.getNumOverflows() > 0);
+        assertEquals(numFrames, table.size());
+        for (int i = 0; i < numFrames; i++)
+        {
+            assertSame(projections[i], table.get(SSRC, i * 3000L, numFrames));
+        }
+
+        // Once they are no longer needed, new frames replace them and the
+        // overflowed frames are dropped.
+        long nowMs = numFrames + WAIT_MS + 1;
+        Projection p = new Projection(nowMs);
+        table.put(SSRC, 12345, p, nowMs);
+        assertSame(p, table.get(SSRC, 12345, nowMs));
+        assertTrue(table.size() <= 16);
+        for (int i = 0; i < numFrames; i++)
+        {
+            assertNull(table.get(SSRC, i * 3000L, nowMs));
+        }
+    }
+
+    @Test
+    public void testManyCollisions()
+    {
+        FrameProjectionTable<Projection> table = createTable(256);
+        long[] timestamps
+            = findCollisions(table, 0, FrameProjectionTable.MAX_PROBES + 2);
+
+        Projection[] projections = new Projection[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++)
+        {
+            projections[i] = new Projection(0);
+            table.put(SSRC, timestamps[i], projections[i], 0);
+        }
+
+        // All of them are still found, the ones which don't fit after
+        // probing are in the overflow map.
+        for (int i = 0; i < timestamps.length; i++)
+        {
+            assertSame(projections[i], table.get(SSRC, timestamps[i], 0));
+        }
+        assertEquals(2, table.getNumOverflows());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize()
+    {
+        createTable(100);
+    }
+}
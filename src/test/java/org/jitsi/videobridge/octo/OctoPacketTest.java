@@ -0,0 +1,233 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.octo;
+
+import org.jitsi.utils.*;
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.jitsi.videobridge.octo.OctoPacket.*;
+
+public class OctoPacketTest
+{
+    /**
+     * Creates an Octo packet with a specific media type and payload.
+     */
+    private static byte[] createPacket(
+            MediaType mediaType, String conferenceId, String endpointId,
+            int payloadLength)
+    {
+        byte[] buf = new byte[OCTO_HEADER_LENGTH + payloadLength];
+        writeHeaders(
+            buf, 0, true, mediaType, 0, conferenceId, endpointId);
+        for (int i = 0; i < payloadLength; i++)
+        {
+            buf[OCTO_HEADER_LENGTH + i] = (byte) (i + payloadLength);
+        }
+        return buf;
+    }
+
+    /**
+     * Reads a bundle and collects the packets in it.
+     */
+    private static int readBundle(
+            byte[] buf, int off, int len, List<byte[]> packets)
+    {
+        return OctoPacket.readBundle(
+            buf, off, len,
+            (b, o, l) -> packets.add(Arrays.copyOfRange(b, o, o + l)));
+    }
+
+    @Test
+    public void testHeaders()
+    {
+        byte[] buf
+            = createPacket(MediaType.VIDEO, "abcdef", "0123abcd", 100);
+
+        assertFalse(isBundle(buf, 0, buf.length));
+        assertEquals(MediaType.VIDEO, readMediaType(buf, 0, buf.length));
+        assertEquals(0xabcdef, readConferenceId(buf, 0, buf.length));
+        assertEquals(
+            "0123abcd",
+            endpointIdToString(readEndpointId(buf, 0, buf.length)));
+    }
+
+    @Test
+    public void testBundleRoundTrip()
+    {
+        BundleBuilder builder = new BundleBuilder(1200);
+        assertTrue(builder.isEmpty());
+
+        List<byte[]> sent = new ArrayList<>();
+        sent.add(createPacket(MediaType.AUDIO, "1", "a", 50));
+        sent.add(createPacket(MediaType.VIDEO, "2", "b", 300));
+        sent.add(createPacket(MediaType.DATA, "3", "c", 0));
+        for (byte[] packet : sent)
+        {
+            assertTrue(builder.fits(packet.length));
+            builder.add(packet, 0, packet.length);
+        }
+        assertEquals(3, builder.getNumPackets());
+        assertEquals(0, builder.getOffset());
+
+        // Copy the bundle to a larger buffer at a non-zero offset, as it
+        // would be received.
+        byte[] received = new byte[1500];
+        System.arraycopy(
+            builder.getBuffer(), builder.getOffset(),
+            received, 10, builder.getLength());
+        assertTrue(isBundle(received, 10, builder.getLength()));
+
+        List<byte[]> packets = new ArrayList<>();
+        assertEquals(0, readBundle(received, 10, builder.getLength(), packets));
+        assertEquals(sent.size(), packets.size());
+        for (int i = 0; i < sent.size(); i++)
+        {
+            assertArrayEquals(sent.get(i), packets.get(i));
+        }
+        assertEquals(
+            MediaType.DATA,
+            readMediaType(packets.get(2), 0, packets.get(2).length));
+
+        builder.reset();
+        assertTrue(builder.isEmpty());
+        assertEquals(0, builder.getNumPackets());
+    }
+
+    @Test
+    public void testSinglePacketBundle()
+    {
+        BundleBuilder builder = new BundleBuilder(1200);
+        byte[] packet = createPacket(MediaType.AUDIO, "1", "a", 50);
+        builder.add(packet, 0, packet.length);
+
+        // A single packet is sent without the bundle header.
+        assertEquals(packet.length, builder.getLength());
+        assertArrayEquals(
+            packet,
+            Arrays.copyOfRange(
+                builder.getBuffer(),
+                builder.getOffset(),
+                builder.getOffset() + builder.getLength()));
+        assertFalse(
+            isBundle(
+                builder.getBuffer(), builder.getOffset(), builder.getLength()));
+    }
+
+    @Test
+    public void testBundleFull()
+    {
+        BundleBuilder builder = new BundleBuilder(100);
+        byte[] packet = createPacket(MediaType.AUDIO, "1", "a", 30);
+
+        // 8 (header) + 2 * (2 + 38) = 88
+        builder.add(packet, 0, packet.length);
+        builder.add(packet, 0, packet.length);
+        assertFalse(builder.fits(packet.length));
+        assertTrue(builder.fits(10));
+        try
+        {
+            builder.add(packet, 0, packet.length);
+            fail("Added a packet which does not fit.");
+        }
+        catch (IllegalArgumentException expected)
+        {
+        }
+        assertEquals(2, builder.getNumPackets());
+        assertEquals(88, builder.getLength());
+
+        builder.reset();
+        assertTrue(builder.fits(100 - OCTO_HEADER_LENGTH - 2));
+        assertFalse(builder.fits(100 - OCTO_HEADER_LENGTH - 1));
+    }
+
+    @Test
+    public void testMalformedBundleLengths()
+    {
+        byte[] packet = createPacket(MediaType.AUDIO, "1", "a", 20);
+
+        BundleBuilder builder = new BundleBuilder(1200);
+        builder.add(packet, 0, packet.length);
+        builder.add(packet, 0, packet.length);
+        byte[] bundle
+            = Arrays.copyOfRange(builder.getBuffer(), 0, builder.getLength());
+        int secondLengthOffset
+            = OCTO_HEADER_LENGTH + BUNDLE_LENGTH_FIELD_LENGTH + packet.length;
+
+        // The second packet extends beyond the end of the bundle.
+        byte[] buf = bundle.clone();
+        writeBundledPacketLength(buf, secondLengthOffset, packet.length + 1);
+        List<byte[]> packets = new ArrayList<>();
+        assertEquals(1, readBundle(buf, 0, buf.length, packets));
+        assertEquals(1, packets.size());
+
+        // The second packet is shorter than an Octo header.
+        buf = bundle.clone();
+        writeBundledPacketLength(buf, secondLengthOffset, 0);
+        packets.clear();
+        assertEquals(1, readBundle(buf, 0, buf.length, packets));
+        assertEquals(1, packets.size());
+
+        // The bundle is truncated in the middle of a length field.
+        packets.clear();
+        assertEquals(
+            1, readBundle(bundle, 0, secondLengthOffset + 1, packets));
+        assertEquals(1, packets.size());
+
+        // The first length is invalid, nothing can be read.
+        buf = bundle.clone();
+        writeBundledPacketLength(buf, OCTO_HEADER_LENGTH, 0xFFFF);
+        packets.clear();
+        assertEquals(1, readBundle(buf, 0, buf.length, packets));
+        assertTrue(packets.isEmpty());
+
+        // An empty bundle.
+        packets.clear();
+        assertEquals(0, readBundle(bundle, 0, OCTO_HEADER_LENGTH, packets));
+        assertTrue(packets.isEmpty());
+    }
+
+    @Test
+    public void testNestedBundle()
+    {
+        byte[] packet = createPacket(MediaType.VIDEO, "1", "a", 20);
+
+        BundleBuilder inner = new BundleBuilder(1200);
+        inner.add(packet, 0, packet.length);
+        inner.add(packet, 0, packet.length);
+
+        BundleBuilder outer = new BundleBuilder(1200);
+        outer.add(packet, 0, packet.length);
+        outer.add(inner.getBuffer(), inner.getOffset(), inner.getLength());
+        outer.add(packet, 0, packet.length);
+
+        // The nested bundle is dropped, and the packets around it are read.
+        List<byte[]> packets = new ArrayList<>();
+        assertEquals(
+            1,
+            readBundle(
+                outer.getBuffer(), outer.getOffset(), outer.getLength(),
+                packets));
+        assertEquals(2, packets.size());
+        for (byte[] p : packets)
+        {
+            assertArrayEquals(packet, p);
+            assertNotNull(readMediaType(p, 0, p.length));
+        }
+    }
+}
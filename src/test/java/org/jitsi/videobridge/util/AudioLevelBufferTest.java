@@ -0,0 +1,131 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.util;
+
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class AudioLevelBufferTest
+{
+    /**
+     * Drains a buffer into a list of {ssrc, level} pairs.
+     */
+    private static List<long[]> drain(AudioLevelBuffer buffer)
+    {
+        List<long[]> levels = new ArrayList<>();
+        int numRead
+            = buffer.drain(
+                (ssrc, level) -> levels.add(new long[]{ssrc, level}));
+        assertEquals(levels.size(), numRead);
+        return levels;
+    }
+
+    @Test
+    public void testPacking()
+    {
+        AudioLevelBuffer buffer = new AudioLevelBuffer(4);
+        buffer.add(0xFFFF_FFFFL, 127);
+        buffer.add(0, 0);
+        buffer.add(0x1234_5678L, 64);
+
+        List<long[]> levels = drain(buffer);
+        assertEquals(3, levels.size());
+        assertArrayEquals(new long[]{0xFFFF_FFFFL, 127}, levels.get(0));
+        assertArrayEquals(new long[]{0, 0}, levels.get(1));
+        assertArrayEquals(new long[]{0x1234_5678L, 64}, levels.get(2));
+        assertEquals(0, buffer.getNumOverwritten());
+
+        assertTrue(drain(buffer).isEmpty());
+    }
+
+    @Test
+    public void testWraparound()
+    {
+        AudioLevelBuffer buffer = new AudioLevelBuffer(4);
+        long ssrc = 0;
+        for (int round = 0; round < 10; round++)
+        {
+            long first = ssrc;
+            for (int i = 0; i < 3; i++)
+            {
+                buffer.add(ssrc++, round);
+            }
+
+            List<long[]> levels = drain(buffer);
+            assertEquals(3, levels.size());
+            for (int i = 0; i < 3; i++)
+            {
+                assertArrayEquals(
+                    new long[]{first + i, round}, levels.get(i));
+            }
+        }
+        assertEquals(0, buffer.getNumOverwritten());
+    }
+
+    @Test
+    public void testOverwrite()
+    {
+        int capacity = 8;
+        AudioLevelBuffer buffer = new AudioLevelBuffer(capacity);
+        for (int i = 0; i < 2 * capacity; i++)
+        {
+            buffer.add(i, i);
+        }
+        assertEquals(capacity, buffer.getNumOverwritten());
+
+        // Only the latest levels are left, in order.
+        List<long[]> levels = drain(buffer);
+        assertEquals(capacity, levels.size());
+        for (int i = 0; i < capacity; i++)
+        {
+            assertArrayEquals(
+                new long[]{capacity + i, capacity + i}, levels.get(i));
+        }
+
+        // The buffer keeps working after it has been overwritten.
+        buffer.add(100, 1);
+        levels = drain(buffer);
+        assertEquals(1, levels.size());
+        assertArrayEquals(new long[]{100, 1}, levels.get(0));
+        assertEquals(capacity, buffer.getNumOverwritten());
+    }
+
+    @Test
+    public void testPartialOverwrite()
+    {
+        AudioLevelBuffer buffer = new AudioLevelBuffer(4);
+        buffer.add(1, 1);
+        buffer.add(2, 2);
+        assertEquals(2, drain(buffer).size());
+
+        // Overwrite a single unread level.
+        for (int i = 0; i < 5; i++)
+        {
+            buffer.add(10 + i, i);
+        }
+        assertEquals(1, buffer.getNumOverwritten());
+
+        List<long[]> levels = drain(buffer);
+        assertEquals(4, levels.size());
+        for (int i = 0; i < 4; i++)
+        {
+            assertArrayEquals(new long[]{11 + i, 1 + i}, levels.get(i));
+        }
+    }
+}
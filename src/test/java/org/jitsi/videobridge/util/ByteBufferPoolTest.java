@@ -0,0 +1,211 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.util;
+
+import org.junit.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class ByteBufferPoolTest
+{
+    @Test
+    public void testReturnAfterThresholdsChange()
+    {
+        int[] oldThresholds = ByteBufferPool.getThresholds();
+        try
+        {
+            ByteBufferPool.setThresholds(new int[] { 200, 700, 1200 });
+
+            List<byte[]> buffers = new ArrayList<>();
+            for (int size : new int[] { 100, 200, 650, 700, 1100, 1200 })
+            {
+                byte[] buf = ByteBufferPool.getBuffer(size);
+                assertTrue(buf.length >= size);
+                buffers.add(buf);
+            }
+
+            // Buffers obtained with the old size classes must be accepted (or
+            // discarded) by the new ones, and must never be used to serve a
+            // request larger than they are.
+            int[] newThresholds = { 300, 800, 1100 };
+            ByteBufferPool.setThresholds(newThresholds);
+            assertArrayEquals(
+                newThresholds,
+                Arrays.copyOf(
+                    ByteBufferPool.getThresholds(), newThresholds.length));
+            for (byte[] buf : buffers)
+            {
+                ByteBufferPool.returnBuffer(buf);
+            }
+            ByteBufferPool.returnBuffer(new byte[10]);
+            ByteBufferPool.returnBuffer(
+                new byte[ByteBufferPool.MAX_RETURNED_SIZE]);
+
+            for (int i = 0; i < 100; i++)
+            {
+                for (int size : new int[] { 1, 300, 301, 800, 801, 1100 })
+                {
+                    byte[] buf = ByteBufferPool.getBuffer(size);
+                    assertTrue(buf.length >= size);
+                }
+            }
+
+            // Requests larger than all classes are still served.
+            byte[] buf = ByteBufferPool.getBuffer(1500);
+            assertTrue(buf.length >= 1500);
+            ByteBufferPool.returnBuffer(buf);
+        }
+        finally
+        {
+            ByteBufferPool.setThresholds(oldThresholds);
+        }
+    }
+
+    @Test
+    public void testRequireSizeClass()
+    {
+        int[] oldThresholds = ByteBufferPool.getThresholds();
+        int oldRequiredSize = ByteBufferPool.getRequiredSize();
+        try
+        {
+            ByteBufferPool.resetRequiredSize(0);
+            ByteBufferPool.setThresholds(new int[] { 200, 700, 1200 });
+            ByteBufferPool.requireSizeClass(1000);
+            assertArrayEquals(
+                new int[] { 200, 700, 1200 }, ByteBufferPool.getThresholds());
+
+            ByteBufferPool.requireSizeClass(1540);
+            assertArrayEquals(
+                new int[] { 200, 700, 1200, 1540 },
+                ByteBufferPool.getThresholds());
+
+            // The class is kept when the size classes change.
+            ByteBufferPool.setThresholds(new int[] { 300, 800, 1100 });
+            assertArrayEquals(
+                new int[] { 300, 800, 1100, 1540 },
+                ByteBufferPool.getThresholds());
+            ByteBufferPool.setThresholds(new int[] { 300, 800, 1600 });
+            assertArrayEquals(
+                new int[] { 300, 800, 1600 }, ByteBufferPool.getThresholds());
+
+            byte[] buf = ByteBufferPool.getBuffer(1540);
+            assertTrue(buf.length >= 1540);
+            ByteBufferPool.returnBuffer(buf);
+        }
+        finally
+        {
+            ByteBufferPool.resetRequiredSize(oldRequiredSize);
+            ByteBufferPool.setThresholds(oldThresholds);
+        }
+        assertEquals(oldRequiredSize, ByteBufferPool.getRequiredSize());
+        assertArrayEquals(oldThresholds, ByteBufferPool.getThresholds());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRequireSizeClassTooLarge()
+    {
+        ByteBufferPool.requireSizeClass(ByteBufferPool.MAX_RETURNED_SIZE);
+    }
+
+    @Test
+    public void testThreadLocalPool()
+    {
+        ThreadLocalByteBufferPool pool = new ThreadLocalByteBufferPool(1000);
+
+        byte[] buf = pool.getBuffer(500);
+        assertEquals(1000, buf.length);
+
+        // A buffer returned on the same thread is served from its magazine.
+        pool.returnBuffer(buf);
+        assertSame(buf, pool.getBuffer(1000));
+
+        // Larger requests bypass the magazine.
+        byte[] large = pool.getBuffer(1500);
+        assertTrue(large.length >= 1500);
+
+        // Small buffers are not kept.
+        pool.returnBuffer(new byte[10]);
+        for (int i = 0; i < 1000; i++)
+        {
+            assertTrue(pool.getBuffer(1000).length >= 1000);
+        }
+    }
+
+    @Test
+    public void testThreadLocalPoolSpill()
+    {
+        ThreadLocalByteBufferPool pool = new ThreadLocalByteBufferPool(100);
+
+        // Return more buffers than fit in a magazine, so that some of them
+        // spill to the partitions, and get them all back.
+        Set<byte[]> returned
+            = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < 1000; i++)
+        {
+            byte[] buf = new byte[100];
+            returned.add(buf);
+            pool.returnBuffer(buf);
+        }
+
+        int numReused = 0;
+        for (int i = 0; i < 2000; i++)
+        {
+            byte[] buf = pool.getBuffer(100);
+            assertEquals(100, buf.length);
+            if (returned.remove(buf))
+            {
+                numReused++;
+            }
+        }
+        assertTrue(numReused > 0);
+    }
+
+    @Test
+    public void testThreadLocalPoolAcrossThreads()
+        throws Exception
+    {
+        ThreadLocalByteBufferPool pool = new ThreadLocalByteBufferPool(100);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            // Buffers requested on one thread and returned on another end
+            // up in the magazine of the latter.
+            List<byte[]> buffers = new ArrayList<>();
+            for (int i = 0; i < 10; i++)
+            {
+                buffers.add(pool.getBuffer(100));
+            }
+
+            byte[] reused = executor.submit(() ->
+            {
+                for (byte[] buf : buffers)
+                {
+                    pool.returnBuffer(buf);
+                }
+                return pool.getBuffer(100);
+            }).get(10, TimeUnit.SECONDS);
+
+            assertSame(buffers.get(buffers.size() - 1), reused);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.util;
+
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentLongObjectMapTest
+{
+    @Test
+    public void testPutGetRemove()
+    {
+        ConcurrentLongObjectMap<String> map = new ConcurrentLongObjectMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+        assertNull(map.remove(1));
+
+        assertNull(map.put(1, "a"));
+        assertNull(map.put(0, "zero"));
+        assertNull(map.put(-1, "minus one"));
+        assertNull(map.put(0xFFFF_FFFFL, "max ssrc"));
+        assertEquals(4, map.size());
+        assertEquals("a", map.get(1));
+        assertEquals("zero", map.get(0));
+        assertEquals("minus one", map.get(-1));
+        assertEquals("max ssrc", map.get(0xFFFF_FFFFL));
+        assertTrue(map.containsKey(0));
+        assertFalse(map.containsKey(2));
+
+        // Replace.
+        assertEquals("a", map.put(1, "b"));
+        assertEquals("b", map.get(1));
+        assertEquals(4, map.size());
+
+        assertEquals("b", map.putIfAbsent(1, "c"));
+        assertEquals("b", map.get(1));
+        assertNull(map.putIfAbsent(2, "c"));
+        assertEquals("c", map.get(2));
+        assertEquals(5, map.size());
+
+        // Remove.
+        assertEquals("zero", map.remove(0));
+        assertNull(map.get(0));
+        assertFalse(map.containsKey(0));
+        assertEquals(4, map.size());
+
+        assertFalse(map.remove(1, new String("b")));
+        assertEquals("b", map.get(1));
+        assertTrue(map.remove(1, map.get(1)));
+        assertNull(map.get(1));
+        assertEquals(3, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(2));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullValue()
+    {
+        new ConcurrentLongObjectMap<String>().put(1, null);
+    }
+
+    @Test
+    public void testRemoveValuesIf()
+    {
+        ConcurrentLongObjectMap<Integer> map = new ConcurrentLongObjectMap<>();
+        for (int i = 0; i < 100; i++)
+        {
+            map.put(i, i);
+        }
+
+        assertFalse(map.removeValuesIf(v -> v >= 100));
+        assertEquals(100, map.size());
+
+        assertTrue(map.removeValuesIf(v -> v % 2 == 0));
+        assertEquals(50, map.size());
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals(i % 2 == 0 ? null : Integer.valueOf(i), map.get(i));
+        }
+
+        assertTrue(map.removeValuesIf(v -> true));
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+        assertFalse(map.removeValuesIf(v -> true));
+    }
+
+    @Test
+    public void testRemoveValuesIfInconsistentPredicate()
+    {
+        ConcurrentLongObjectMap<Integer> map = new ConcurrentLongObjectMap<>();
+        for (int i = 0; i < 64; i++)
+        {
+            map.put(i, i);
+        }
+
+        // A predicate which gives a different answer each time it is
+        // evaluated for the same value. Each value must be removed or kept
+        // consistently with a single evaluation.
+        Set<Integer> removed = new HashSet<>();
+        boolean[] next = { false };
+        assertTrue(map.removeValuesIf(v ->
+        {
+            next[0] = !next[0];
+            if (next[0])
+            {
+                removed.add(v);
+            }
+            return next[0];
+        }));
+
+        assertEquals(64 - removed.size(), map.size());
+        for (int i = 0; i < 64; i++)
+        {
+            assertEquals(
+                removed.contains(i) ? null : Integer.valueOf(i), map.get(i));
+        }
+        assertEquals(64 - removed.size(), map.values().size());
+    }
+
+    @Test
+    public void testCollidingKeys()
+    {
+        // Keys which differ only in their high bits, or by multiples of
+        // powers of two, end up probing the same slots in small tables.
+        long[] keys = new long[256];
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = ((long) i << 32) | (i % 4 << 8);
+        }
+
+        ConcurrentLongObjectMap<Long> map = new ConcurrentLongObjectMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(1234);
+        for (int n = 0; n < 10000; n++)
+        {
+            long key = keys[random.nextInt(keys.length)];
+            switch (random.nextInt(4))
+            {
+            case 0:
+            case 1:
+                long value = random.nextLong();
+                assertEquals(expected.put(key, value), map.put(key, value));
+                break;
+            case 2:
+                assertEquals(expected.remove(key), map.remove(key));
+                break;
+            default:
+                long threshold = random.nextLong();
+                expected.values().removeIf(v -> v < threshold);
+                map.removeValuesIf(v -> v < threshold);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (long key : keys)
+        {
+            assertEquals(expected.get(key), map.get(key));
+        }
+
+        Map<Long, Long> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertEquals(expected, actual);
+    }
+}
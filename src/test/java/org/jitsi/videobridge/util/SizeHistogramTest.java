@@ -0,0 +1,162 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.util;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class SizeHistogramTest
+{
+    private static final int MAX_SIZE = 2000;
+
+    @Test
+    public void testEmpty()
+    {
+        SizeHistogram histogram = new SizeHistogram(MAX_SIZE);
+        assertEquals(0, histogram.getTotal());
+
+        long[] counts = histogram.getCountsAndReset();
+        assertNull(SizeHistogram.computeThresholds(counts, 3, MAX_SIZE));
+        assertNull(SizeHistogram.computeThresholds(counts, 1, MAX_SIZE));
+    }
+
+    @Test
+    public void testSinglePeak()
+    {
+        SizeHistogram histogram = new SizeHistogram(MAX_SIZE);
+        for (int i = 0; i < 1000; i++)
+        {
+            histogram.record(1200);
+        }
+        assertEquals(1000, histogram.getTotal());
+
+        long[] counts = histogram.getCountsAndReset();
+        assertEquals(0, histogram.getTotal());
+
+        // Not enough distinct sizes for more than one class.
+        assertNull(SizeHistogram.computeThresholds(counts, 3, MAX_SIZE));
+
+        int[] thresholds = SizeHistogram.computeThresholds(counts, 1, MAX_SIZE);
+        assertNotNull(thresholds);
+        assertEquals(1, thresholds.length);
+        assertEquals(1200, thresholds[0]);
+        assertEquals(1000 * 1200, SizeHistogram.getCost(counts, thresholds));
+    }
+
+    @Test
+    public void testBucketBoundaries()
+    {
+        SizeHistogram histogram = new SizeHistogram(MAX_SIZE);
+        histogram.record(1);
+        histogram.record(16);
+        histogram.record(17);
+
+        long[] counts = histogram.getCountsAndReset();
+        assertEquals(2, counts[0]);
+        assertEquals(1, counts[1]);
+
+        int[] thresholds = SizeHistogram.computeThresholds(counts, 2, MAX_SIZE);
+        assertArrayEquals(new int[] { 16, 32 }, thresholds);
+    }
+
+    @Test
+    public void testPeaks()
+    {
+        SizeHistogram histogram = new SizeHistogram(MAX_SIZE);
+        for (int i = 0; i < 100; i++)
+        {
+            histogram.record(100);
+            histogram.record(500);
+            histogram.record(1100);
+            // A few outliers which are not worth a class of their own.
+            if (i % 50 == 0)
+            {
+                histogram.record(480);
+                histogram.record(1090);
+            }
+        }
+
+        long[] counts = histogram.getCountsAndReset();
+        int[] thresholds = SizeHistogram.computeThresholds(counts, 3, MAX_SIZE);
+        assertArrayEquals(new int[] { 112, 512, 1104 }, thresholds);
+        assertTrue(
+            SizeHistogram.getCost(counts, thresholds)
+                < SizeHistogram.getCost(counts, new int[] { 220, 775, 1240 }));
+    }
+
+    @Test
+    public void testLargeSizes()
+    {
+        int maxSize = ByteBufferPool.MAX_RETURNED_SIZE - 1;
+        SizeHistogram histogram = new SizeHistogram(maxSize);
+        histogram.record(ByteBufferPool.MAX_RETURNED_SIZE + 100);
+        histogram.record(10 * ByteBufferPool.MAX_RETURNED_SIZE);
+        assertEquals(0, histogram.getTotal());
+
+        histogram.record(maxSize - 5);
+        histogram.record(100);
+        assertEquals(2, histogram.getTotal());
+
+        // The largest class is capped so that its buffers are still
+        // accepted back by the pool.
+        long[] counts = histogram.getCountsAndReset();
+        int[] thresholds = SizeHistogram.computeThresholds(counts, 2, maxSize);
+        assertEquals(2, thresholds.length);
+        assertEquals(112, thresholds[0]);
+        assertEquals(maxSize, thresholds[1]);
+        assertTrue(thresholds[1] < ByteBufferPool.MAX_RETURNED_SIZE);
+
+        int[] oldThresholds = ByteBufferPool.getThresholds();
+        try
+        {
+            ByteBufferPool.setThresholds(thresholds);
+            int numLargeReturns = getNumLargeReturns();
+
+            byte[] buf = ByteBufferPool.getBuffer(maxSize - 5);
+            assertEquals(thresholds[1], buf.length);
+            ByteBufferPool.returnBuffer(buf);
+            assertEquals(numLargeReturns, getNumLargeReturns());
+        }
+        finally
+        {
+            ByteBufferPool.setThresholds(oldThresholds);
+        }
+    }
+
+    /**
+     * Gets the number of buffers which {@link ByteBufferPool} discarded
+     * because they were too large.
+     */
+    private static int getNumLargeReturns()
+    {
+        return ((Number) ByteBufferPool.getStatsJson().get("num_large_returns"))
+            .intValue();
+    }
+
+    @Test
+    public void testCostOfUnfittedRequests()
+    {
+        long[] counts = new long[4];
+        counts[3] = 10; // sizes in (48, 64]
+
+        // Requests which don't fit any class are charged the upper bound of
+        // the last bucket.
+        assertEquals(10 * 64, SizeHistogram.getCost(counts, new int[] { 32 }));
+        assertEquals(10 * 64, SizeHistogram.getCost(counts, new int[] { 64 }));
+        assertEquals(10 * 80, SizeHistogram.getCost(counts, new int[] { 80 }));
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright @ 2019 - present 8x8, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jitsi.videobridge.util;
+
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TimerWheelTest
+{
+    private static final long TICK_MS = 10;
+
+    /**
+     * Advances a wheel one tick at a time, and returns the time (in
+     * milliseconds) at which each item was returned.
+     */
+    private static Map<String, Long> advance(
+        TimerWheel<String> wheel, long fromMs, long toMs)
+    {
+        Map<String, Long> due = new HashMap<>();
+        for (long nowMs = fromMs; nowMs <= toMs; nowMs += TICK_MS)
+        {
+            for (String item : wheel.advance(nowMs))
+            {
+                assertNull(item + " returned twice", due.put(item, nowMs));
+            }
+        }
+        return due;
+    }
+
+    @Test
+    public void testDueTimeOrdering()
+    {
+        TimerWheel<String> wheel = new TimerWheel<>(TICK_MS, 0);
+        wheel.schedule("c", 300);
+        wheel.schedule("a", 10);
+        wheel.schedule("b", 25);
+        assertEquals(3, wheel.size());
+
+        Map<String, Long> due = advance(wheel, 0, 1000);
+        assertEquals(10, (long) due.get("a"));
+        // Deadlines are rounded up to a tick, never down.
+        assertEquals(30, (long) due.get("b"));
+        assertEquals(300, (long) due.get("c"));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testPastDeadline()
+    {
+        TimerWheel<String> wheel = new TimerWheel<>(TICK_MS, 1000);
+        wheel.schedule("a", 0);
+        assertTrue(wheel.advance(1000).isEmpty());
+        assertEquals(Collections.singletonList("a"), wheel.advance(1010));
+    }
+
+    @Test
+    public void testCascading()
+    {
+        TimerWheel<String> wheel = new TimerWheel<>(TICK_MS, 0);
+        // Levels 1, 2 and 3 (64, 4096 and 262144 ticks per slot).
+        long[] deadlines = { 65 * TICK_MS, 5000 * TICK_MS, 300000 * TICK_MS };
+        for (int i = 0; i < deadlines.length; i++)
+        {
+            wheel.schedule("item" + i, deadlines[i]);
+        }
+
+        Map<String, Long> due = advance(wheel, 0, 300000 * TICK_MS);
+        for (int i = 0; i < deadlines.length; i++)
+        {
+            assertEquals(deadlines[i], (long) due.get("item" + i));
+        }
+    }
+
+    @Test
+    public void testLargeJump()
+    {
+        TimerWheel<String> wheel = new TimerWheel<>(TICK_MS, 0);
+        wheel.schedule("a", 50);
+        wheel.schedule("b", 5000 * TICK_MS);
+        wheel.schedule("c", 7000 * TICK_MS);
+
+        List<String> due = wheel.advance(6000 * TICK_MS);
+        Collections.sort(due);
+        assertEquals(Arrays.asList("a", "b"), due);
+        assertEquals(1, wheel.size());
+        assertEquals(
+            Collections.singletonList("c"), wheel.advance(7000 * TICK_MS));
+    }
+
+    @Test
+    public void testRescheduleEarlier()
+    {
+        TimerWheel<String> wheel = new TimerWheel<>(TICK_MS, 0);
+        wheel.schedule("a", 5000);
+        wheel.schedule("a", 100);
+        // A later deadline does not replace an earlier one.
+        wheel.schedule("a", 3000);
+        assertEquals(1, wheel.size());
+
+        Map<String, Long> due = advance(wheel, 0, 10000);
+        assertEquals(Collections.singletonMap("a", 100L), due);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testRescheduleAfterDue()
+    {
+        TimerWheel<String> wheel = new TimerWheel<>(TICK_MS, 0);
+        wheel.schedule("a", 100);
+        assertEquals(Collections.singletonList("a"), wheel.advance(100));
+
+        wheel.schedule("a", 200);
+        assertEquals(Collections.singletonMap("a", 200L),
+            advance(wheel, 110, 1000));
+    }
+
+    @Test
+    public void testBeyondRange()
+    {
+        // The wheel spans 2^24 ticks.
+        long rangeMs = (1L << 24) * TICK_MS;
+        TimerWheel<String> wheel = new TimerWheel<>(TICK_MS, 0);
+        wheel.schedule("a", 3 * rangeMs + 70);
+
+        assertTrue(wheel.advance(rangeMs).isEmpty());
+        assertTrue(wheel.advance(2 * rangeMs).isEmpty());
+        assertTrue(wheel.advance(3 * rangeMs + 60).isEmpty());
+        assertEquals(1, wheel.size());
+        assertEquals(
+            Collections.singletonList("a"), wheel.advance(3 * rangeMs + 70));
+    }
+
+    @Test
+    public void testRemove()
+    {
+        TimerWheel<String> wheel = new TimerWheel<>(TICK_MS, 0);
+        wheel.schedule("a", 100);
+        wheel.schedule("b", 100000);
+        wheel.schedule("c", 200);
+
+        assertTrue(wheel.remove("a"));
+        assertTrue(wheel.remove("b"));
+        assertFalse(wheel.remove("b"));
+        assertFalse(wheel.remove("d"));
+        assertEquals(1, wheel.size());
+
+        Map<String, Long> due = advance(wheel, 0, 200000);
+        assertEquals(Collections.singletonMap("c", 200L), due);
+
+        // A removed item can be scheduled again.
+        wheel.schedule("a", 200100);
+        assertEquals(
+            Collections.singletonList("a"), wheel.advance(200100));
+    }
+
+    @Test
+    public void testClear()
+    {
+        TimerWheel<String> wheel = new TimerWheel<>(TICK_MS, 0);
+        wheel.schedule("a", 100);
+        wheel.schedule("b", 100000);
+        wheel.clear();
+        assertEquals(0, wheel.size());
+        assertTrue(advance(wheel, 0, 200000).isEmpty());
+    }
+}